@@ -0,0 +1,35 @@
+#!/usr/bin/env bash
+# Measures time from container start to actuator readiness and to the first 200 on /shopping/cart.
+#
+# Usage: scripts/startup-benchmark.sh <image> <cart-id> [docker run options...]
+# The container must reach Mongo (and search-service); <cart-id> must be an existing cart.
+set -euo pipefail
+
+IMAGE=${1:?image required}
+CART_ID=${2:?cart id required}
+shift 2
+PORT=${PORT:-8087}
+MANAGEMENT_PORT=${MANAGEMENT_PORT:-8088}
+BASE_URL="http://localhost:${PORT}"
+MANAGEMENT_URL="http://localhost:${MANAGEMENT_PORT}"
+
+now_ms() { date +%s%3N; }
+
+wait_for() {
+  local url=$1 expected=$2
+  until [ "$(curl -s -o /dev/null -w '%{http_code}' "$url")" = "$expected" ]; do
+    sleep 0.05
+  done
+}
+
+start=$(now_ms)
+container=$(docker run -d -p "${PORT}:8087" -p "${MANAGEMENT_PORT}:8088" "$@" "$IMAGE")
+trap 'docker rm -f "$container" >/dev/null' EXIT
+
+wait_for "${MANAGEMENT_URL}/actuator/health/readiness" 200
+ready=$(now_ms)
+wait_for "${BASE_URL}/shopping/cart/${CART_ID}" 200
+first_cart=$(now_ms)
+
+echo "readiness:       $((ready - start)) ms"
+echo "first cart 200:  $((first_cart - start)) ms"
@@ -0,0 +1,75 @@
+package com.example.webshoppingservice.benchmark;
+
+import com.example.webshoppingservice.ProductDataProvider;
+import com.example.webshoppingservice.config.AppConfig;
+import com.example.webshoppingservice.model.ShoppingCart;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serialization of a cart response with the reflective ObjectMapper and with the Blackbird module from
+ * {@link AppConfig}, plus the cost of gzipping the Blackbird output as response compression would.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CartSerializationBenchmark {
+
+    @Param({"50", "500"})
+    private int products;
+
+    private ShoppingCart shoppingCart;
+    private ObjectMapper reflectiveMapper;
+    private ObjectMapper blackbirdMapper;
+
+    @Setup
+    public void setUp() {
+        shoppingCart = new ShoppingCart(UUID.randomUUID(),
+                IntStream.range(0, products).mapToObj(i -> ProductDataProvider.getSimpleProduct()).toList(),
+                LocalDateTime.of(2023, 10, 19, 19, 0), 1L);
+        reflectiveMapper = Jackson2ObjectMapperBuilder.json().build();
+        blackbirdMapper = Jackson2ObjectMapperBuilder.json().modulesToInstall(new AppConfig().blackbirdModule()).build();
+    }
+
+    @Benchmark
+    public byte[] reflective() throws JsonProcessingException {
+        return reflectiveMapper.writeValueAsBytes(shoppingCart);
+    }
+
+    @Benchmark
+    public byte[] blackbird() throws JsonProcessingException {
+        return blackbirdMapper.writeValueAsBytes(shoppingCart);
+    }
+
+    @Benchmark
+    public int blackbirdGzipped() throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            blackbirdMapper.writeValue(gzip, shoppingCart);
+        }
+        return compressed.size();
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.webshoppingservice.benchmark;
+
+import com.example.webshoppingservice.service.ShoppingMetrics;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Cost of the hot-path instrumentation around a call that does no work: a bare supplier, a percentile-histogram
+ * {@link Timer} on a Prometheus registry, and {@link ShoppingMetrics#recordRepositoryRead}, which adds a JFR event.
+ * Run with 4 threads as well as 1 to see contention on the shared timer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HotPathTimerBenchmark {
+
+    private final UUID cartId = UUID.randomUUID();
+    private final Supplier<Optional<UUID>> call = () -> Optional.of(cartId);
+    private Timer timer;
+    private ShoppingMetrics shoppingMetrics;
+
+    @Setup
+    public void setUp() {
+        PrometheusMeterRegistry meterRegistry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        timer = Timer.builder("benchmark.timer")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        shoppingMetrics = new ShoppingMetrics(meterRegistry);
+    }
+
+    @Benchmark
+    public Optional<UUID> bareCall() {
+        return call.get();
+    }
+
+    @Benchmark
+    public Optional<UUID> timedCall() {
+        return timer.record(call);
+    }
+
+    @Benchmark
+    public Optional<UUID> repositoryReadCall() {
+        return shoppingMetrics.recordRepositoryRead(cartId, call);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Optional<UUID> repositoryReadCallContended() {
+        return shoppingMetrics.recordRepositoryRead(cartId, call);
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.webshoppingservice.benchmark;
+
+import com.example.webshoppingservice.ProductDataProvider;
+import com.example.webshoppingservice.client.OffHeapProductCatalog;
+import com.example.webshoppingservice.model.Product;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Heap footprint and full GC pause with only one copy of the catalog alive: the on-heap {@link HashMap} that
+ * {@link ProductCatalogLookupBenchmark} compares against, or the {@link OffHeapProductCatalog} the local catalog keeps.
+ * The score is the time of one {@link System#gc()}, which marks everything the catalog keeps on the heap; the
+ * {@link Footprint} counters report the heap the catalog retains and the direct memory it holds.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class ProductCatalogFootprintBenchmark {
+
+    @Param({"10000", "100000"})
+    private int catalogSize;
+
+    @Param({"heap", "offHeap"})
+    private String store;
+
+    private Object catalog;
+    private long retainedHeapBytes;
+    private long directBytes;
+
+    @Setup
+    public void setUp() {
+        long heapBefore = usedHeapAfterGc();
+        long directBefore = usedDirectMemory();
+        catalog = createCatalog();
+        retainedHeapBytes = usedHeapAfterGc() - heapBefore;
+        directBytes = usedDirectMemory() - directBefore;
+    }
+
+    @Benchmark
+    public Object fullGc(final Footprint footprint) {
+        System.gc();
+        footprint.retainedHeapBytes = retainedHeapBytes;
+        footprint.directBytes = directBytes;
+        return catalog;
+    }
+
+    /**
+     * Reported once per iteration; the values do not change between iterations.
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Footprint {
+        public long retainedHeapBytes;
+        public long directBytes;
+    }
+
+    /**
+     * Builds the catalog in its own frame, so the fetched product list is garbage once it returns.
+     */
+    private Object createCatalog() {
+        var products = IntStream.range(0, catalogSize).mapToObj(i -> ProductDataProvider.getSimpleProduct()).toList();
+        return switch (store) {
+            case "heap" -> products.stream().collect(Collectors.toMap(Product::getId, Function.identity()));
+            case "offHeap" -> OffHeapProductCatalog.of(products);
+            default -> throw new IllegalArgumentException("Unknown store: " + store);
+        };
+    }
+
+    private static long usedHeapAfterGc() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long usedDirectMemory() {
+        return ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+                .filter(pool -> "direct".equals(pool.getName()))
+                .mapToLong(BufferPoolMXBean::getMemoryUsed)
+                .sum();
+    }
+}
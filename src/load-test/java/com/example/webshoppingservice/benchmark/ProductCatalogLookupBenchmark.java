@@ -0,0 +1,85 @@
+package com.example.webshoppingservice.benchmark;
+
+import com.example.webshoppingservice.ProductDataProvider;
+import com.example.webshoppingservice.client.OffHeapProductCatalog;
+import com.example.webshoppingservice.model.Product;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Lookup of one cart's worth of products: a scan of the fetched catalog list, as a catalog batch does, an on-heap
+ * {@link HashMap}, and the {@link OffHeapProductCatalog} the resolver answers from. Add {@code -prof gc} to the
+ * JMH arguments to compare allocation rates; {@link ProductCatalogFootprintBenchmark} compares heap footprint and
+ * GC pauses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ProductCatalogLookupBenchmark {
+
+    private static final int CART_SIZE = 5;
+
+    @Param({"10000", "100000"})
+    private int catalogSize;
+
+    private List<Product> catalog;
+    private Map<UUID, Product> heapCatalog;
+    private OffHeapProductCatalog offHeapCatalog;
+    private List<Set<UUID>> carts;
+
+    @Setup
+    public void setUp() {
+        catalog = IntStream.range(0, catalogSize).mapToObj(i -> ProductDataProvider.getSimpleProduct()).toList();
+        heapCatalog = catalog.stream().collect(Collectors.toMap(Product::getId, Function.identity()));
+        offHeapCatalog = OffHeapProductCatalog.of(catalog);
+        carts = IntStream.range(0, 1_024)
+                .mapToObj(i -> ThreadLocalRandom.current().ints(CART_SIZE, 0, catalogSize)
+                        .mapToObj(index -> catalog.get(index).getId())
+                        .collect(Collectors.toSet()))
+                .toList();
+    }
+
+    @Benchmark
+    public List<Product> catalogScan() {
+        Set<UUID> cart = nextCart();
+        return catalog.stream().filter(product -> cart.contains(product.getId())).toList();
+    }
+
+    @Benchmark
+    public List<Product> heapLookup() {
+        return nextCart().stream().map(heapCatalog::get).toList();
+    }
+
+    @Benchmark
+    public Optional<List<Product>> offHeapLookup() {
+        return offHeapCatalog.findAll(nextCart());
+    }
+
+    private Set<UUID> nextCart() {
+        return carts.get(ThreadLocalRandom.current().nextInt(carts.size()));
+    }
+}
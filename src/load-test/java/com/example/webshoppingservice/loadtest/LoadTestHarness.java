@@ -0,0 +1,69 @@
+package com.example.webshoppingservice.loadtest;
+
+import com.example.webshoppingservice.ShoppingServiceApplication;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Boots the service against an in-memory MongoDB and a stub product catalog, drives it with the scenario named by
+ * the first argument (default {@code mixed}) and prints per-endpoint throughput and latency percentiles.
+ * <p>
+ * Run with {@code ./mvnw -Pload-test test-compile exec:exec -Dscenario=<name>}.
+ */
+@Slf4j
+public final class LoadTestHarness {
+
+    private LoadTestHarness() {
+    }
+
+    public static void main(final String[] args) throws Exception {
+        Scenario scenario = Scenario.load(args.length > 0 ? args[0] : "mixed");
+        MongoServer mongoServer = new MongoServer(new MemoryBackend());
+        InetSocketAddress mongoAddress = mongoServer.bind();
+        try (StubProductServer productServer = StubProductServer.start(scenario.catalogSize());
+             ConfigurableApplicationContext application = new SpringApplicationBuilder(ShoppingServiceApplication.class)
+                     .run("--server.port=0",
+                             "--spring.data.mongodb.uri=mongodb://localhost:" + mongoAddress.getPort() + "/shopping",
+                             "--internal.api.search-service.url=" + productServer.baseUrl(),
+                             // The driver stands in for an edge proxy that assigns each simulated client an id.
+                             "--shopping.cart.admission.trusted-proxies=127.0.0.1,0:0:0:0:0:0:0:1",
+                             "--logging.level.com.example.webshoppingservice=INFO")) {
+            int port = application.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+            TrafficDriver driver = new TrafficDriver(scenario, port, productServer.productIds());
+
+            driver.seedCarts();
+            log.info("Warming up scenario '{}' for {}", scenario.name(), scenario.warmup());
+            driver.run(scenario.warmup());
+            log.info("Measuring scenario '{}' at {} req/s for {}", scenario.name(), scenario.ratePerSecond(), scenario.duration());
+            Duration elapsed = driver.run(scenario.duration());
+
+            printReport(scenario, driver.stats(), elapsed);
+        } finally {
+            mongoServer.shutdownNow();
+        }
+    }
+
+    private static void printReport(final Scenario scenario, final Map<Operation, EndpointStats> stats, final Duration elapsed) {
+        double seconds = elapsed.toNanos() / 1_000_000_000.0;
+        StringBuilder report = new StringBuilder()
+                .append(String.format(Locale.ROOT, "%nScenario '%s': target %d req/s, measured %.1f s, catalog %d products%n",
+                        scenario.name(), scenario.ratePerSecond(), seconds, scenario.catalogSize()))
+                .append(String.format(Locale.ROOT, "%-36s %8s %9s %6s %6s %6s %6s %9s %9s %9s %9s%n",
+                        "endpoint", "requests", "req/s", "2xx", "4xx", "5xx", "io", "p50 ms", "p90 ms", "p99 ms", "max ms"));
+        stats.forEach((operation, endpoint) -> report.append(String.format(Locale.ROOT,
+                "%-36s %8d %9.1f %6d %6d %6d %6d %9.2f %9.2f %9.2f %9.2f%n",
+                operation.endpoint(), endpoint.requests(), endpoint.requests() / seconds,
+                endpoint.success(), endpoint.clientErrors(), endpoint.serverErrors(), endpoint.transportErrors(),
+                endpoint.percentileMillis(50), endpoint.percentileMillis(90), endpoint.percentileMillis(99),
+                endpoint.maxMillis())));
+        System.out.println(report);
+    }
+}
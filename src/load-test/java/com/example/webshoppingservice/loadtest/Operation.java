@@ -0,0 +1,19 @@
+package com.example.webshoppingservice.loadtest;
+
+enum Operation {
+    CREATE("POST /shopping/cart"),
+    GET("GET /shopping/cart/{cartId}"),
+    ADD("PATCH /shopping/cart/{cartId}/add"),
+    REMOVE("PATCH /shopping/cart/{cartId}/remove"),
+    DELETE("DELETE /shopping/cart/{cartId}");
+
+    private final String endpoint;
+
+    Operation(final String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    String endpoint() {
+        return endpoint;
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.webshoppingservice.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Properties;
+
+/**
+ * Load-test scenario read from {@code scenarios/<name>.properties} on the classpath.
+ */
+record Scenario(String name,
+                int catalogSize,
+                int initialCarts,
+                int productsPerRequest,
+                int ratePerSecond,
+                Duration warmup,
+                Duration duration,
+                int clients,
+                int workers,
+                OperationMix mix) {
+
+    static Scenario load(final String name) {
+        Properties properties = new Properties();
+        try (InputStream input = Scenario.class.getResourceAsStream("/scenarios/" + name + ".properties")) {
+            if (input == null) {
+                throw new IllegalArgumentException("Unknown scenario: " + name);
+            }
+            properties.load(input);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new Scenario(name,
+                intProperty(properties, "catalog.size"),
+                intProperty(properties, "carts.initial"),
+                intProperty(properties, "products.per-request"),
+                intProperty(properties, "rate.per-second"),
+                Duration.ofSeconds(intProperty(properties, "warmup.seconds")),
+                Duration.ofSeconds(intProperty(properties, "duration.seconds")),
+                intProperty(properties, "clients"),
+                intProperty(properties, "workers"),
+                new OperationMix(
+                        intProperty(properties, "mix.create"),
+                        intProperty(properties, "mix.get"),
+                        intProperty(properties, "mix.add"),
+                        intProperty(properties, "mix.remove"),
+                        intProperty(properties, "mix.delete")));
+    }
+
+    private static int intProperty(final Properties properties, final String key) {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing scenario property: " + key);
+        }
+        return Integer.parseInt(value.trim());
+    }
+
+    record OperationMix(int create, int get, int add, int remove, int delete) {
+
+        Operation pick(final int roll) {
+            int threshold = create;
+            if (roll < threshold) {
+                return Operation.CREATE;
+            }
+            threshold += get;
+            if (roll < threshold) {
+                return Operation.GET;
+            }
+            threshold += add;
+            if (roll < threshold) {
+                return Operation.ADD;
+            }
+            threshold += remove;
+            return roll < threshold ? Operation.REMOVE : Operation.DELETE;
+        }
+
+        int total() {
+            return create + get + add + remove + delete;
+        }
+    }
+}
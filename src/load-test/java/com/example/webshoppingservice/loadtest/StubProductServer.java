@@ -0,0 +1,99 @@
+package com.example.webshoppingservice.loadtest;
+
+import com.example.webshoppingservice.model.Category;
+import com.example.webshoppingservice.model.Manufacturer;
+import com.example.webshoppingservice.model.Product;
+import com.example.webshoppingservice.model.Review;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+
+/**
+ * Stand-in for web-search-service: serves a generated catalog of fixed size on {@code /search/products}.
+ */
+final class StubProductServer implements AutoCloseable {
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final List<UUID> productIds;
+
+    private StubProductServer(final HttpServer server, final ExecutorService executor, final List<UUID> productIds) {
+        this.server = server;
+        this.executor = executor;
+        this.productIds = productIds;
+    }
+
+    static StubProductServer start(final int catalogSize) throws IOException {
+        Random random = new Random(catalogSize);
+        List<Product> catalog = IntStream.range(0, catalogSize).mapToObj(i -> product(random, i)).toList();
+        ObjectMapper objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        byte[] body = objectMapper.writeValueAsBytes(catalog);
+
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        server.setExecutor(executor);
+        server.createContext("/search/products", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(body);
+            }
+        });
+        server.start();
+        return new StubProductServer(server, executor, catalog.stream().map(Product::getId).toList());
+    }
+
+    String baseUrl() {
+        return "http://localhost:" + server.getAddress().getPort() + "/search";
+    }
+
+    List<UUID> productIds() {
+        return productIds;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private static Product product(final Random random, final int index) {
+        LocalDateTime createdAt = LocalDateTime.of(2023, 10, 19, 19, 0).minusDays(random.nextInt(365));
+        return Product.builder()
+                .id(new UUID(random.nextLong(), random.nextLong()))
+                .name("Product " + index)
+                .description("Description of product " + index)
+                .price(BigDecimal.valueOf(100 + random.nextInt(100_000), 2))
+                .manufacturer(Manufacturer.builder()
+                        .id(new UUID(random.nextLong(), random.nextLong()))
+                        .name("Manufacturer " + random.nextInt(100))
+                        .address("Address " + index)
+                        .contact("contact@manufacturer.com")
+                        .build())
+                .categories(List.of(Category.values()[random.nextInt(Category.values().length)]))
+                .createdAt(createdAt)
+                .updatedAt(createdAt)
+                .reviews(List.of(Review.builder()
+                        .reviewerName("Reviewer " + index)
+                        .comment("Comment " + index)
+                        .rating(1 + random.nextInt(5))
+                        .reviewDate(createdAt)
+                        .build()))
+                .build();
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.webshoppingservice.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+
+/**
+ * Open-model traffic generator: requests are scheduled at a fixed arrival rate regardless of how fast the service
+ * answers, and latency is taken from the scheduled start time, so queueing behind a slow request is not hidden
+ * (no coordinated omission).
+ */
+@Slf4j
+final class TrafficDriver {
+
+    private static final int CART_POOL_SIZE = 16_384;
+
+    private final Scenario scenario;
+    private final String baseUrl;
+    private final List<UUID> productIds;
+    private final HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicReferenceArray<UUID> carts = new AtomicReferenceArray<>(CART_POOL_SIZE);
+    private final AtomicInteger nextCartSlot = new AtomicInteger();
+    private final Map<Operation, EndpointStats> stats = new EnumMap<>(Operation.class);
+
+    TrafficDriver(final Scenario scenario, final int port, final List<UUID> productIds) {
+        this.scenario = scenario;
+        this.baseUrl = "http://localhost:" + port + "/shopping/cart";
+        this.productIds = productIds;
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new EndpointStats());
+        }
+    }
+
+    void seedCarts() {
+        for (int i = 0; i < scenario.initialCarts(); i++) {
+            execute(Operation.CREATE, System.nanoTime());
+        }
+    }
+
+    /**
+     * Runs the scenario at its arrival rate for the given duration and returns the wall-clock time it took.
+     */
+    Duration run(final Duration duration) throws InterruptedException {
+        stats.values().forEach(EndpointStats::reset);
+        ExecutorService workers = Executors.newFixedThreadPool(scenario.workers());
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / scenario.ratePerSecond();
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        try {
+            for (long intended = start; intended < end; intended += intervalNanos) {
+                long delay = intended - System.nanoTime();
+                if (delay > 0) {
+                    LockSupport.parkNanos(delay);
+                }
+                long intendedStart = intended;
+                Operation operation = scenario.mix().pick(ThreadLocalRandom.current().nextInt(scenario.mix().total()));
+                workers.execute(() -> execute(operation, intendedStart));
+            }
+        } finally {
+            workers.shutdown();
+            if (!workers.awaitTermination(1, TimeUnit.MINUTES)) {
+                log.warn("Load test workers did not drain within a minute");
+                workers.shutdownNow();
+            }
+        }
+        return Duration.ofNanos(System.nanoTime() - start);
+    }
+
+    Map<Operation, EndpointStats> stats() {
+        return stats;
+    }
+
+    private void execute(final Operation operation, final long intendedStart) {
+        EndpointStats endpointStats = stats.get(operation);
+        int slot = randomCartSlot();
+        UUID cartId = carts.get(slot);
+        if (operation != Operation.CREATE && cartId == null) {
+            // Nothing to act on yet: create a cart instead so the arrival rate is kept.
+            execute(Operation.CREATE, intendedStart);
+            return;
+        }
+        try {
+            HttpResponse<byte[]> response = httpClient.send(request(operation, cartId), HttpResponse.BodyHandlers.ofByteArray());
+            endpointStats.record(System.nanoTime() - intendedStart, response.statusCode());
+            onResponse(operation, slot, cartId, response);
+        } catch (IOException e) {
+            endpointStats.recordTransportError(System.nanoTime() - intendedStart);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private HttpRequest request(final Operation operation, final UUID cartId) throws IOException {
+        return requestBuilder(operation, cartId)
+                .header("X-Client-Id", "load-test-" + ThreadLocalRandom.current().nextInt(scenario.clients()))
+                .build();
+    }
+
+    private HttpRequest.Builder requestBuilder(final Operation operation, final UUID cartId) throws IOException {
+        return switch (operation) {
+            case CREATE -> HttpRequest.newBuilder(URI.create(baseUrl))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(
+                            objectMapper.writeValueAsBytes(Map.of("products", randomProductIds()))));
+            case GET -> HttpRequest.newBuilder(URI.create(baseUrl + "/" + cartId)).GET();
+            case ADD -> HttpRequest.newBuilder(URI.create(baseUrl + "/" + cartId + "/add?productIds=" + joinedProductIds()))
+                    .method("PATCH", HttpRequest.BodyPublishers.noBody());
+            case REMOVE -> HttpRequest.newBuilder(URI.create(baseUrl + "/" + cartId + "/remove?productIds=" + joinedProductIds()))
+                    .method("PATCH", HttpRequest.BodyPublishers.noBody());
+            case DELETE -> HttpRequest.newBuilder(URI.create(baseUrl + "/" + cartId)).DELETE();
+        };
+    }
+
+    private void onResponse(final Operation operation, final int slot, final UUID cartId, final HttpResponse<byte[]> response)
+            throws IOException {
+        if (operation == Operation.CREATE && response.statusCode() == 200) {
+            UUID createdId = UUID.fromString(objectMapper.readTree(response.body()).get("id").asText());
+            carts.set(Math.floorMod(nextCartSlot.getAndIncrement(), CART_POOL_SIZE), createdId);
+        } else if (operation == Operation.DELETE || response.statusCode() == 404) {
+            // Deleted here or expired by the cleanup job: stop picking it.
+            carts.compareAndSet(slot, cartId, null);
+        }
+    }
+
+    private int randomCartSlot() {
+        int created = nextCartSlot.get();
+        return created == 0 ? 0 : ThreadLocalRandom.current().nextInt(Math.min(created, CART_POOL_SIZE));
+    }
+
+    private List<UUID> randomProductIds() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return random.ints(scenario.productsPerRequest(), 0, productIds.size())
+                .mapToObj(productIds::get)
+                .toList();
+    }
+
+    private String joinedProductIds() {
+        return randomProductIds().stream().map(UUID::toString).collect(Collectors.joining(","));
+    }
+}
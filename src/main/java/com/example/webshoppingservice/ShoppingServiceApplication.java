@@ -3,13 +3,18 @@ package com.example.webshoppingservice;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.ConfigurableApplicationContext;
 
 @SpringBootApplication
 @EnableConfigurationProperties
 public class ShoppingServiceApplication {
 
     public static void main(String[] args) {
-        SpringApplication.run(ShoppingServiceApplication.class, args);
+        ConfigurableApplicationContext context = SpringApplication.run(ShoppingServiceApplication.class, args);
+        // Training run for the AppCDS archive built in the Dockerfile: start fully, then exit.
+        if (context.getEnvironment().getProperty("shopping.startup.exit-after-start", Boolean.class, false)) {
+            System.exit(SpringApplication.exit(context));
+        }
     }
 
 }
@@ -0,0 +1,76 @@
+package com.example.webshoppingservice.api;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Concurrency limit adjusted by additive increase / multiplicative decrease: a write finishing within the latency
+ * target while the limit is at least half used adds {@code 1 / limit}, a slow or failed write multiplies the limit by
+ * the backoff ratio. Only writes admitted after the last decrease can decrease it again, so a burst of slow writes
+ * that ran together shrinks the limit once rather than once per write. Load beyond the limit is shed before queueing
+ * drives latency up.
+ */
+final class AdaptiveConcurrencyLimit {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyTargetNanos;
+    private final double backoffRatio;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong limitBits;
+    private final AtomicLong lastDecreaseAt = new AtomicLong(Long.MIN_VALUE);
+
+    AdaptiveConcurrencyLimit(final int initialLimit, final int minLimit, final int maxLimit,
+                             final long latencyTargetNanos, final double backoffRatio) {
+        if (minLimit < 1 || maxLimit < minLimit || backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("Invalid concurrency limit settings");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyTargetNanos = latencyTargetNanos;
+        this.backoffRatio = backoffRatio;
+        this.limitBits = new AtomicLong(Double.doubleToLongBits(Math.max(minLimit, Math.min(maxLimit, initialLimit))));
+    }
+
+    boolean tryAcquire() {
+        if (inFlight.incrementAndGet() > limit()) {
+            inFlight.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    void release(final long admittedAtNanos, final long completedAtNanos, final boolean failed) {
+        int inFlightBeforeRelease = inFlight.getAndDecrement();
+        boolean decrease = failed || completedAtNanos - admittedAtNanos > latencyTargetNanos;
+        if (decrease) {
+            long lastDecrease = lastDecreaseAt.get();
+            if (admittedAtNanos < lastDecrease || !lastDecreaseAt.compareAndSet(lastDecrease, completedAtNanos)) {
+                return;
+            }
+        }
+        while (true) {
+            long bits = limitBits.get();
+            double limit = Double.longBitsToDouble(bits);
+            double newLimit;
+            if (decrease) {
+                newLimit = Math.max(minLimit, limit * backoffRatio);
+            } else if (inFlightBeforeRelease * 2 >= limit) {
+                newLimit = Math.min(maxLimit, limit + 1 / limit);
+            } else {
+                return;
+            }
+            if (newLimit == limit || limitBits.compareAndSet(bits, Double.doubleToLongBits(newLimit))) {
+                return;
+            }
+        }
+    }
+
+    int limit() {
+        return (int) Double.longBitsToDouble(limitBits.get());
+    }
+
+    int inFlight() {
+        return inFlight.get();
+    }
+}
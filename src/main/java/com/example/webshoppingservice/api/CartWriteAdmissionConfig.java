@@ -0,0 +1,59 @@
+package com.example.webshoppingservice.api;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Component
+@ConfigurationProperties(prefix = "shopping.cart.admission")
+@Getter
+@Setter
+public class CartWriteAdmissionConfig {
+
+    private boolean enabled = true;
+
+    /**
+     * Header identifying the client, honoured only on requests from {@link #trustedProxies}. Other requests are
+     * keyed by their authenticated principal or remote address.
+     */
+    private String clientIdHeader = "X-Client-Id";
+
+    /**
+     * Remote addresses of proxies that set {@link #clientIdHeader} themselves; empty when clients connect directly.
+     */
+    private List<String> trustedProxies = new ArrayList<>();
+
+    /**
+     * Cart writes a client may send back to back before being held to {@link #refillPerSecond}.
+     */
+    private int burst = 20;
+
+    private double refillPerSecond = 10;
+
+    /**
+     * Number of token buckets clients are hashed onto; clients sharing a stripe share its rate.
+     */
+    private int stripes = 4096;
+
+    private int initialConcurrencyLimit = 32;
+
+    private int minConcurrencyLimit = 4;
+
+    private int maxConcurrencyLimit = 256;
+
+    /**
+     * Cart writes slower than this, or failing with a server error, shrink the concurrency limit.
+     */
+    private Duration latencyTarget = Duration.ofMillis(500);
+
+    /**
+     * Factor the concurrency limit is multiplied by on a slow or failed write, at most once per round of writes in
+     * flight.
+     */
+    private double backoffRatio = 0.9;
+}
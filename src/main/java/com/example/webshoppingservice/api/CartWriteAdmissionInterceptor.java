@@ -0,0 +1,144 @@
+package com.example.webshoppingservice.api;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.io.IOException;
+import java.security.Principal;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Admission control for {@link ShoppingController} writes, which each may fetch the catalog and write to Mongo.
+ * A write needs a token from its client's bucket and a slot under the adaptive concurrency limit; otherwise it is
+ * answered with 429 and {@code Retry-After}.
+ */
+@Component
+public class CartWriteAdmissionInterceptor implements HandlerInterceptor {
+
+    private static final String ADMITTED_AT = CartWriteAdmissionInterceptor.class.getName() + ".admittedAt";
+
+    private final CartWriteAdmissionConfig config;
+    private final LongSupplier ticker;
+    private final long startedAtNanos;
+    private final StripedTokenBuckets tokenBuckets;
+    private final AdaptiveConcurrencyLimit concurrencyLimit;
+    private final Counter admitted;
+    private final Counter rateLimited;
+    private final Counter concurrencyLimited;
+
+    @Autowired
+    public CartWriteAdmissionInterceptor(final CartWriteAdmissionConfig config, final MeterRegistry meterRegistry) {
+        this(config, meterRegistry, System::nanoTime);
+    }
+
+    CartWriteAdmissionInterceptor(final CartWriteAdmissionConfig config, final MeterRegistry meterRegistry, final LongSupplier ticker) {
+        this.config = config;
+        this.ticker = ticker;
+        this.startedAtNanos = ticker.getAsLong();
+        this.tokenBuckets = new StripedTokenBuckets(config.getStripes(), config.getBurst(), config.getRefillPerSecond());
+        this.concurrencyLimit = new AdaptiveConcurrencyLimit(config.getInitialConcurrencyLimit(),
+                config.getMinConcurrencyLimit(), config.getMaxConcurrencyLimit(),
+                config.getLatencyTarget().toNanos(), config.getBackoffRatio());
+        this.admitted = admissionCounter(meterRegistry, "admitted");
+        this.rateLimited = admissionCounter(meterRegistry, "rate-limited");
+        this.concurrencyLimited = admissionCounter(meterRegistry, "concurrency-limited");
+        Gauge.builder("shopping.cart.admission.concurrency-limit", concurrencyLimit, AdaptiveConcurrencyLimit::limit)
+                .description("Current adaptive limit of concurrent cart writes")
+                .register(meterRegistry);
+        Gauge.builder("shopping.cart.admission.in-flight", concurrencyLimit, AdaptiveConcurrencyLimit::inFlight)
+                .description("Cart writes currently being processed")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public boolean preHandle(final HttpServletRequest request, final HttpServletResponse response, final Object handler)
+            throws IOException {
+        if (!config.isEnabled() || !isCartWrite(request, handler)) {
+            return true;
+        }
+        long now = nowNanos();
+        long waitNanos = tokenBuckets.tryAcquire(clientKey(request), now);
+        if (waitNanos > 0) {
+            rateLimited.increment();
+            reject(response, Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1)),
+                    "Too many cart writes from this client");
+            return false;
+        }
+        if (!concurrencyLimit.tryAcquire()) {
+            concurrencyLimited.increment();
+            reject(response, 1, "Too many concurrent cart writes");
+            return false;
+        }
+        admitted.increment();
+        request.setAttribute(ADMITTED_AT, now);
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(final HttpServletRequest request, final HttpServletResponse response,
+                                final Object handler, final Exception ex) {
+        if (request.getAttribute(ADMITTED_AT) instanceof Long admittedAt) {
+            request.removeAttribute(ADMITTED_AT);
+            boolean failed = ex != null || response.getStatus() >= HttpStatus.INTERNAL_SERVER_ERROR.value();
+            concurrencyLimit.release(admittedAt, nowNanos(), failed);
+        }
+    }
+
+    private boolean isCartWrite(final HttpServletRequest request, final Object handler) {
+        return handler instanceof HandlerMethod handlerMethod
+                && ShoppingController.class.isAssignableFrom(handlerMethod.getBeanType())
+                && !HttpMethod.GET.matches(request.getMethod())
+                && !HttpMethod.HEAD.matches(request.getMethod());
+    }
+
+    /**
+     * Authenticated principal, else the client id header when a trusted proxy set it, else the remote address. A
+     * client cannot pick its own key, so rotating the header does not buy it fresh buckets.
+     */
+    private String clientKey(final HttpServletRequest request) {
+        Principal principal = request.getUserPrincipal();
+        if (principal != null) {
+            return "principal:" + principal.getName();
+        }
+        String remoteAddress = request.getRemoteAddr();
+        if (config.getTrustedProxies().contains(remoteAddress)) {
+            String clientId = request.getHeader(config.getClientIdHeader());
+            if (clientId != null && !clientId.isBlank()) {
+                return "client:" + clientId;
+            }
+        }
+        return remoteAddress;
+    }
+
+    /**
+     * Monotonic time since this interceptor was created. Wall-clock steps do not refill or drain buckets, and the
+     * value never goes below the zero that empty buckets and the concurrency limit start from.
+     */
+    private long nowNanos() {
+        return ticker.getAsLong() - startedAtNanos;
+    }
+
+    private static void reject(final HttpServletResponse response, final long retryAfterSeconds, final String message)
+            throws IOException {
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.sendError(HttpStatus.TOO_MANY_REQUESTS.value(), message);
+    }
+
+    private static Counter admissionCounter(final MeterRegistry meterRegistry, final String result) {
+        return Counter.builder("shopping.cart.admission")
+                .description("Cart writes admitted or rejected by admission control")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
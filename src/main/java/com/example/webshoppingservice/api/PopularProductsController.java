@@ -0,0 +1,23 @@
+package com.example.webshoppingservice.api;
+
+import com.example.webshoppingservice.model.PopularProduct;
+import com.example.webshoppingservice.service.PopularProducts;
+import lombok.AllArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/shopping/products")
+@AllArgsConstructor
+public class PopularProductsController {
+
+    private final PopularProducts popularProducts;
+
+    @GetMapping("popular")
+    public List<PopularProduct> getPopularProducts() {
+        return popularProducts.topProducts();
+    }
+}
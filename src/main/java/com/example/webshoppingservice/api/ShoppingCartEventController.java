@@ -0,0 +1,29 @@
+package com.example.webshoppingservice.api;
+
+import com.example.webshoppingservice.service.CartEventsConfig;
+import com.example.webshoppingservice.service.SseCartEventBroadcaster;
+import lombok.AllArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@RestController
+@RequestMapping("/shopping/cart")
+@AllArgsConstructor
+public class ShoppingCartEventController {
+
+    private final SseCartEventBroadcaster sseCartEventBroadcaster;
+    private final CartEventsConfig cartEventsConfig;
+
+    @GetMapping(path = "events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribeToCartEvents() {
+        if (!cartEventsConfig.isEnabled()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Cart events are not enabled");
+        }
+        return sseCartEventBroadcaster.subscribe();
+    }
+}
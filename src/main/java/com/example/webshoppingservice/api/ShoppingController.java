@@ -1,11 +1,18 @@
 package com.example.webshoppingservice.api;
 
 import com.example.webshoppingservice.model.ShoppingCart;
+import com.example.webshoppingservice.model.ShoppingCartPage;
 import com.example.webshoppingservice.model.ShoppingCartRequestBody;
+import com.example.webshoppingservice.service.IdempotentShoppingCartCreator;
 import com.example.webshoppingservice.service.ShoppingService;
 import jakarta.validation.Valid;
 import lombok.AllArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.util.List;
 import java.util.UUID;
@@ -14,36 +21,119 @@ import java.util.UUID;
 @RequestMapping("/shopping/cart")
 @AllArgsConstructor
 public class ShoppingController {
+    /**
+     * Number of products in the whole cart, sent with a page of it.
+     */
+    static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+    static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
 
     private final ShoppingService shoppingService;
+    private final IdempotentShoppingCartCreator idempotentShoppingCartCreator;
 
     @PostMapping
-    public ShoppingCart createShoppingCart(final @RequestBody @Valid ShoppingCartRequestBody requestBody) {
-        return shoppingService.createShoppingCart(requestBody);
+    public ResponseEntity<ShoppingCart> createShoppingCart(final @RequestBody @Valid ShoppingCartRequestBody requestBody,
+                                                           final @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return withETag(shoppingService.createShoppingCart(requestBody));
+        }
+        return withETag(idempotentShoppingCartCreator.createShoppingCart(idempotencyKey, requestBody));
     }
 
     @GetMapping("{cartId}")
-    public ShoppingCart getShoppingCart(final @PathVariable UUID cartId) {
-        return shoppingService.retrieveShoppingCart(cartId);
+    public ResponseEntity<ShoppingCart> getShoppingCart(final @PathVariable UUID cartId,
+                                                        final @RequestParam(required = false) Integer offset,
+                                                        final @RequestParam(required = false) Integer limit,
+                                                        final @RequestParam(required = false) List<String> fields,
+                                                        final WebRequest request) {
+        if (offset == null && limit == null && fields == null) {
+            ShoppingCart shoppingCart = shoppingService.retrieveShoppingCart(cartId);
+            if (shoppingCart.getVersion() != null && request.checkNotModified(toETag(shoppingCart.getVersion()))) {
+                return null;
+            }
+            return withETag(shoppingCart);
+        }
+
+        int pageOffset = offset != null ? offset : 0;
+        List<String> productFields = fields != null ? fields : List.of();
+        ShoppingCartPage page = shoppingService.retrieveShoppingCartPage(cartId, pageOffset, limit, productFields);
+        ShoppingCart shoppingCart = page.shoppingCart();
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().header(TOTAL_COUNT_HEADER, String.valueOf(page.totalProducts()));
+        if (shoppingCart.getVersion() != null) {
+            String eTag = toPageETag(shoppingCart.getVersion(), pageOffset, limit, productFields);
+            if (request.checkNotModified(eTag)) {
+                return null;
+            }
+            response.eTag(eTag);
+        }
+        return response.body(shoppingCart);
     }
 
     @PutMapping("{cartId}")
-    public ShoppingCart updateShoppingCart(final @PathVariable UUID cartId, final @RequestBody @Valid ShoppingCartRequestBody requestBody) {
-        return shoppingService.editShoppingCart(cartId, requestBody);
+    public ResponseEntity<ShoppingCart> updateShoppingCart(final @PathVariable UUID cartId,
+                                                           final @RequestBody @Valid ShoppingCartRequestBody requestBody,
+                                                           final @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return withETag(shoppingService.editShoppingCart(cartId, requestBody, parseIfMatch(ifMatch)));
     }
 
     @PatchMapping("{cartId}/add")
-    public ShoppingCart addProductsToShoppingCart(final @PathVariable UUID cartId, final @RequestParam List<UUID> productIds) {
-        return shoppingService.addProductsToShoppingCart(cartId, productIds);
+    public ResponseEntity<ShoppingCart> addProductsToShoppingCart(final @PathVariable UUID cartId, final @RequestParam List<UUID> productIds,
+                                                                  final @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return withETag(shoppingService.addProductsToShoppingCart(cartId, productIds, parseIfMatch(ifMatch)));
     }
 
     @PatchMapping("{cartId}/remove")
-    public ShoppingCart removeProductsFromShoppingCart(final @PathVariable UUID cartId, final @RequestParam List<UUID> productIds) {
-        return shoppingService.removeProductsFromShoppingCart(cartId, productIds);
+    public ResponseEntity<ShoppingCart> removeProductsFromShoppingCart(final @PathVariable UUID cartId, final @RequestParam List<UUID> productIds,
+                                                                       final @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return withETag(shoppingService.removeProductsFromShoppingCart(cartId, productIds, parseIfMatch(ifMatch)));
+    }
+
+    @PostMapping("{cartId}/merge/{sourceCartId}")
+    public ResponseEntity<ShoppingCart> mergeShoppingCarts(final @PathVariable UUID cartId, final @PathVariable UUID sourceCartId,
+                                                           final @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return withETag(shoppingService.mergeShoppingCarts(cartId, sourceCartId, parseIfMatch(ifMatch)));
     }
 
     @DeleteMapping("{cartId}")
-    public void deleteShoppingCart(final @PathVariable UUID cartId) {
-        shoppingService.deleteShoppingCart(cartId);
+    public void deleteShoppingCart(final @PathVariable UUID cartId,
+                                   final @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        shoppingService.deleteShoppingCart(cartId, parseIfMatch(ifMatch));
+    }
+
+    private static ResponseEntity<ShoppingCart> withETag(final ShoppingCart shoppingCart) {
+        return withETag(ResponseEntity.ok(), shoppingCart);
+    }
+
+    private static ResponseEntity<ShoppingCart> withETag(final ResponseEntity.BodyBuilder response, final ShoppingCart shoppingCart) {
+        if (shoppingCart.getVersion() != null) {
+            response.eTag(toETag(shoppingCart.getVersion()));
+        }
+        return response.body(shoppingCart);
+    }
+
+    private static String toETag(final Long version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * A page is a different representation of the cart than the full read, so its validator also carries the page's
+     * offset, limit and fields; it never matches the full cart's ETag or one of another page.
+     */
+    private static String toPageETag(final Long version, final int offset, final Integer limit, final List<String> fields) {
+        return "\"" + version + "-" + offset + "-" + (limit != null ? limit : "all") + "-" + Integer.toHexString(fields.hashCode()) + "\"";
+    }
+
+    private static Long parseIfMatch(final String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String eTag = ifMatch.trim();
+        if (eTag.startsWith("W/")) {
+            eTag = eTag.substring(2);
+        }
+        try {
+            return Long.valueOf(eTag.replace("\"", ""));
+        } catch (NumberFormatException e) {
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "Shopping cart version mismatch");
+        }
     }
 }
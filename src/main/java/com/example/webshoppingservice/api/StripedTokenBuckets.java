@@ -0,0 +1,49 @@
+package com.example.webshoppingservice.api;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed array of token buckets that keys are hashed onto. Each bucket is kept in the generic cell rate algorithm
+ * form, a single "theoretical arrival time" updated by CAS, which admits the same traffic as a bucket of
+ * {@code burst} tokens refilled at {@code refillPerSecond}.
+ */
+final class StripedTokenBuckets {
+
+    private final AtomicLongArray theoreticalArrivalNanos;
+    private final long emissionIntervalNanos;
+    private final long toleranceNanos;
+
+    StripedTokenBuckets(final int stripes, final int burst, final double refillPerSecond) {
+        if (stripes < 1 || burst < 1 || refillPerSecond <= 0) {
+            throw new IllegalArgumentException("Invalid token bucket settings");
+        }
+        this.theoreticalArrivalNanos = new AtomicLongArray(stripes);
+        this.emissionIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / refillPerSecond);
+        this.toleranceNanos = emissionIntervalNanos * (burst - 1);
+    }
+
+    /**
+     * Takes a token from the key's bucket.
+     *
+     * @return 0 if a token was taken, otherwise nanoseconds until the next token
+     */
+    long tryAcquire(final String key, final long nowNanos) {
+        int stripe = Math.floorMod(spread(key.hashCode()), theoreticalArrivalNanos.length());
+        while (true) {
+            long theoreticalArrival = theoreticalArrivalNanos.get(stripe);
+            long start = Math.max(theoreticalArrival, nowNanos);
+            long wait = start - nowNanos - toleranceNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (theoreticalArrivalNanos.compareAndSet(stripe, theoreticalArrival, start + emissionIntervalNanos)) {
+                return 0;
+            }
+        }
+    }
+
+    private static int spread(final int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
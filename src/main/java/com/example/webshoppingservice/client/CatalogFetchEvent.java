@@ -0,0 +1,29 @@
+package com.example.webshoppingservice.client;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One {@link ProductClient#getAllProducts()} call made for a batch of product lookups.
+ */
+@Name("com.example.webshoppingservice.CatalogFetch")
+@Label("Catalog Fetch")
+@Category({"Web Shopping Service", "Catalog"})
+@Description("Product catalog fetched from search-service for a batch of lookups")
+@StackTrace(false)
+class CatalogFetchEvent extends jdk.jfr.Event {
+
+    @Label("Catalog Size")
+    int catalogSize;
+
+    @Label("Lookups")
+    @Description("Product lookups served by this fetch")
+    int lookups;
+
+    @Label("Failed")
+    @Description("Whether search-service failed to return the catalog")
+    boolean failed;
+}
@@ -0,0 +1,13 @@
+package com.example.webshoppingservice.client;
+
+import com.example.webshoppingservice.model.Product;
+
+import java.util.List;
+
+/**
+ * Notified with every catalog fetched from search-service, after the requests waiting for it were answered.
+ */
+public interface CatalogRefreshListener {
+
+    void onCatalogRefresh(List<Product> catalog);
+}
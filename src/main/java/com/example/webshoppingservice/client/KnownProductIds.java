@@ -0,0 +1,78 @@
+package com.example.webshoppingservice.client;
+
+import com.example.webshoppingservice.model.Product;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Bloom filter of the ids in the last fetched catalog, used to reject requests for unknown products
+ * without fetching the catalog.
+ */
+@Component
+public class KnownProductIds implements CatalogRefreshListener {
+
+    private final KnownProductIdsConfig config;
+    private final Clock clock;
+    private final Counter rejections;
+    private volatile Snapshot snapshot;
+
+    @Autowired
+    public KnownProductIds(final KnownProductIdsConfig config, final MeterRegistry meterRegistry) {
+        this(config, meterRegistry, Clock.systemUTC());
+    }
+
+    KnownProductIds(final KnownProductIdsConfig config, final MeterRegistry meterRegistry, final Clock clock) {
+        this.config = config;
+        this.clock = clock;
+        this.rejections = Counter.builder("shopping.catalog.bloom-filter.rejections")
+                .description("Product lookups rejected because no requested id is in the catalog")
+                .register(meterRegistry);
+        Gauge.builder("shopping.catalog.bloom-filter.false-positive-rate", config, KnownProductIdsConfig::getFalsePositiveRate)
+                .tag("type", "configured")
+                .description("False-positive rate the product id filter is sized for")
+                .register(meterRegistry);
+        Gauge.builder("shopping.catalog.bloom-filter.false-positive-rate", this, KnownProductIds::expectedFalsePositiveRate)
+                .tag("type", "expected")
+                .description("False-positive rate expected for the current product id filter")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void onCatalogRefresh(final List<Product> catalog) {
+        List<UUID> ids = catalog.stream().map(Product::getId).toList();
+        snapshot = new Snapshot(ProductIdBloomFilter.create(ids, config.getFalsePositiveRate()), clock.instant());
+    }
+
+    /**
+     * Returns {@code true} only if the filter is fresh and none of the ids can be in the catalog.
+     */
+    public boolean isDefinitelyUnknown(final Collection<UUID> productIds) {
+        Snapshot current = snapshot;
+        if (current == null || Duration.between(current.builtAt(), clock.instant()).compareTo(config.getMaxAge()) > 0) {
+            return false;
+        }
+        boolean unknown = productIds.stream().noneMatch(current.filter()::mightContain);
+        if (unknown) {
+            rejections.increment();
+        }
+        return unknown;
+    }
+
+    private double expectedFalsePositiveRate() {
+        Snapshot current = snapshot;
+        return current == null ? Double.NaN : current.filter().expectedFalsePositiveRate();
+    }
+
+    private record Snapshot(ProductIdBloomFilter filter, Instant builtAt) {
+    }
+}
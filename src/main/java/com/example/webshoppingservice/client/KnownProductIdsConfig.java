@@ -0,0 +1,23 @@
+package com.example.webshoppingservice.client;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "shopping.catalog.bloom-filter")
+@Getter
+@Setter
+public class KnownProductIdsConfig {
+
+    private double falsePositiveRate = 0.01;
+
+    /**
+     * How long a filter is trusted after the catalog fetch it was built from. Older filters are
+     * ignored, so products added to the catalog since are not rejected for longer than this.
+     */
+    private Duration maxAge = Duration.ofMinutes(1);
+}
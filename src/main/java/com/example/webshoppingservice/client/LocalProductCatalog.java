@@ -0,0 +1,129 @@
+package com.example.webshoppingservice.client;
+
+import com.example.webshoppingservice.model.Product;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Local copy of the last fetched catalog, stored off-heap in an {@link OffHeapProductCatalog}.
+ * {@link ProductResolver} answers lookups from it without fetching the catalog while the copy is younger than
+ * {@link LocalProductCatalogConfig#getRefreshInterval()}; once it is older, the next fetched catalog is encoded
+ * again on its own thread, sharing the off-heap chunks that did not change. Direct memory is only freed once the GC
+ * collects its buffers, so an unchanged catalog must not allocate it again on every refresh.
+ */
+@Component
+@Slf4j
+public class LocalProductCatalog implements CatalogRefreshListener {
+
+    private final LocalProductCatalogConfig config;
+    private final ExecutorService executor;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private final Timer encodeTimer;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter stale;
+    private volatile Snapshot snapshot;
+
+    public LocalProductCatalog(final LocalProductCatalogConfig config, final MeterRegistry meterRegistry) {
+        this.config = config;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("local-catalog-");
+        threadFactory.setDaemon(true);
+        this.executor = Executors.newSingleThreadExecutor(threadFactory);
+        this.encodeTimer = Timer.builder("shopping.catalog.local.encode")
+                .description("Time spent encoding the catalog into off-heap memory")
+                .register(meterRegistry);
+        this.hits = lookupCounter(meterRegistry, "hit");
+        this.misses = lookupCounter(meterRegistry, "miss");
+        this.stale = lookupCounter(meterRegistry, "stale");
+        Gauge.builder("shopping.catalog.local.size", this, LocalProductCatalog::size)
+                .baseUnit("products")
+                .description("Number of products in the local catalog")
+                .register(meterRegistry);
+        Gauge.builder("shopping.catalog.local.encoded", this, localCatalog -> {
+                    Snapshot current = localCatalog.snapshot;
+                    return current == null ? 0 : current.catalog().encodedBytes();
+                })
+                .baseUnit("bytes")
+                .description("Off-heap bytes used by encoded products of the local catalog")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void onCatalogRefresh(final List<Product> products) {
+        if (!config.isEnabled() || isFresh(snapshot) || !refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                replace(products);
+            } catch (RuntimeException e) {
+                log.warn("Could not refresh local product catalog", e);
+            } finally {
+                refreshing.set(false);
+            }
+        });
+    }
+
+    /**
+     * Returns the products of {@code productIds} in catalog order, or empty when the local copy is disabled,
+     * too old, or misses any of them.
+     */
+    public Optional<List<Product>> findProducts(final Collection<UUID> productIds) {
+        Snapshot current = snapshot;
+        if (!config.isEnabled() || current == null) {
+            return Optional.empty();
+        }
+        if (!isFresh(current)) {
+            stale.increment();
+            return Optional.empty();
+        }
+        Optional<List<Product>> products = current.catalog().findAll(productIds);
+        (products.isPresent() ? hits : misses).increment();
+        return products;
+    }
+
+    public int size() {
+        Snapshot current = snapshot;
+        return current == null ? 0 : current.catalog().size();
+    }
+
+    void replace(final List<Product> products) {
+        Snapshot previous = snapshot;
+        OffHeapProductCatalog catalog = encodeTimer.record(
+                () -> OffHeapProductCatalog.of(products, previous == null ? null : previous.catalog()));
+        snapshot = new Snapshot(catalog, System.nanoTime());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private boolean isFresh(final Snapshot current) {
+        return current != null && System.nanoTime() - current.encodedAt() < config.getRefreshInterval().toNanos();
+    }
+
+    private static Counter lookupCounter(final MeterRegistry meterRegistry, final String result) {
+        return Counter.builder("shopping.catalog.local.lookups")
+                .description("Product lookups offered to the local catalog, by whether it could answer them")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private record Snapshot(OffHeapProductCatalog catalog, long encodedAt) {
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.webshoppingservice.client;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "shopping.catalog.local")
+@Getter
+@Setter
+public class LocalProductCatalogConfig {
+
+    private boolean enabled = true;
+
+    /**
+     * How long an encoded catalog answers lookups without a fetch. Catalogs fetched in between are not re-encoded.
+     */
+    private Duration refreshInterval = Duration.ofSeconds(30);
+}
@@ -0,0 +1,454 @@
+package com.example.webshoppingservice.client;
+
+import com.example.webshoppingservice.model.Category;
+import com.example.webshoppingservice.model.Manufacturer;
+import com.example.webshoppingservice.model.Product;
+import com.example.webshoppingservice.model.Review;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Immutable product catalog kept outside the Java heap. Products are encoded into direct
+ * {@link ByteBuffer} chunks and located through an open-addressing id index made of primitive
+ * arrays, so a catalog of millions of products costs the GC a handful of objects. Each chunk is
+ * allocated at the size of the products it holds, so a small catalog takes a small buffer, and a chunk whose bytes
+ * are the same as the previous catalog's chunk at that position is shared instead of allocated again.
+ * Products are decoded on every lookup; callers own the returned instances.
+ */
+public final class OffHeapProductCatalog {
+
+    static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+
+    private static final Category[] CATEGORIES = Category.values();
+    private static final long EMPTY = -1;
+
+    private final List<ByteBuffer> chunks;
+    private final long[] indexMostSignificantBits;
+    private final long[] indexLeastSignificantBits;
+    private final long[] indexOffsets;
+    private final int size;
+    private final long encodedBytes;
+
+    private OffHeapProductCatalog(final List<ByteBuffer> chunks, final long[] indexMostSignificantBits,
+                                  final long[] indexLeastSignificantBits, final long[] indexOffsets,
+                                  final int size, final long encodedBytes) {
+        this.chunks = chunks;
+        this.indexMostSignificantBits = indexMostSignificantBits;
+        this.indexLeastSignificantBits = indexLeastSignificantBits;
+        this.indexOffsets = indexOffsets;
+        this.size = size;
+        this.encodedBytes = encodedBytes;
+    }
+
+    public static OffHeapProductCatalog of(final List<Product> products) {
+        return of(products, null);
+    }
+
+    /**
+     * Encodes {@code products}, sharing the chunks of {@code previous} (may be null) that would be encoded the same,
+     * so re-encoding an unchanged catalog allocates no direct memory.
+     */
+    public static OffHeapProductCatalog of(final List<Product> products, final OffHeapProductCatalog previous) {
+        return of(products, DEFAULT_CHUNK_SIZE, previous);
+    }
+
+    static OffHeapProductCatalog of(final List<Product> products, final int chunkSize) {
+        return of(products, chunkSize, null);
+    }
+
+    static OffHeapProductCatalog of(final List<Product> products, final int chunkSize, final OffHeapProductCatalog previous) {
+        List<ByteBuffer> previousChunks = previous == null ? List.of() : previous.chunks;
+        int capacity = Integer.highestOneBit(Math.max(products.size(), 1) * 2 - 1) << 1;
+        long[] mostSignificantBits = new long[capacity];
+        long[] leastSignificantBits = new long[capacity];
+        long[] offsets = new long[capacity];
+        Arrays.fill(offsets, EMPTY);
+
+        List<ByteBuffer> chunks = new ArrayList<>();
+        ProductEncoder encoder = new ProductEncoder();
+        ByteArrayOutputStream staged = new ByteArrayOutputStream(Math.min(chunkSize, 64 * 1024));
+        int size = 0;
+        long encodedBytes = 0;
+
+        for (Product product : products) {
+            if (product.getId() == null) {
+                continue;
+            }
+            byte[] encoded = encoder.encode(product);
+            if (staged.size() > 0 && staged.size() + encoded.length > chunkSize) {
+                chunks.add(toDirectBuffer(staged, previousChunk(previousChunks, chunks.size())));
+                staged.reset();
+            }
+            long offset = ((long) chunks.size() << 32) | staged.size();
+            staged.write(encoded, 0, encoded.length);
+            encodedBytes += encoded.length;
+
+            int slot = findSlot(mostSignificantBits, leastSignificantBits, offsets, product.getId());
+            if (offsets[slot] == EMPTY) {
+                size++;
+            }
+            mostSignificantBits[slot] = product.getId().getMostSignificantBits();
+            leastSignificantBits[slot] = product.getId().getLeastSignificantBits();
+            offsets[slot] = offset;
+        }
+        if (staged.size() > 0) {
+            chunks.add(toDirectBuffer(staged, previousChunk(previousChunks, chunks.size())));
+        }
+        return new OffHeapProductCatalog(chunks, mostSignificantBits, leastSignificantBits, offsets, size, encodedBytes);
+    }
+
+    public Optional<Product> find(final UUID id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        long offset = indexOffsets[findSlot(indexMostSignificantBits, indexLeastSignificantBits, indexOffsets, id)];
+        if (offset == EMPTY) {
+            return Optional.empty();
+        }
+        return Optional.of(decode(offset));
+    }
+
+    /**
+     * Returns the products of {@code ids} in catalog order, or empty when any of them is not in the catalog.
+     */
+    public Optional<List<Product>> findAll(final Collection<UUID> ids) {
+        long[] found = new long[ids.size()];
+        int count = 0;
+        for (UUID id : ids) {
+            if (id == null) {
+                return Optional.empty();
+            }
+            long offset = indexOffsets[findSlot(indexMostSignificantBits, indexLeastSignificantBits, indexOffsets, id)];
+            if (offset == EMPTY) {
+                return Optional.empty();
+            }
+            found[count++] = offset;
+        }
+        Arrays.sort(found, 0, count);
+        List<Product> products = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            products.add(decode(found[i]));
+        }
+        return Optional.of(products);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Off-heap bytes used by encoded products, excluding the on-heap id index.
+     */
+    public long encodedBytes() {
+        return encodedBytes;
+    }
+
+    /**
+     * Off-heap bytes allocated for the chunks.
+     */
+    long allocatedBytes() {
+        return chunks.stream().mapToLong(ByteBuffer::capacity).sum();
+    }
+
+    private Product decode(final long offset) {
+        return new ProductDecoder(chunks.get((int) (offset >>> 32)), (int) offset).decode();
+    }
+
+    /**
+     * Chunks are only read with absolute gets, so one can back several catalogs.
+     */
+    List<ByteBuffer> chunks() {
+        return chunks;
+    }
+
+    private static ByteBuffer previousChunk(final List<ByteBuffer> previousChunks, final int index) {
+        return index < previousChunks.size() ? previousChunks.get(index) : null;
+    }
+
+    private static ByteBuffer toDirectBuffer(final ByteArrayOutputStream staged, final ByteBuffer previousChunk) {
+        byte[] bytes = staged.toByteArray();
+        if (previousChunk != null && previousChunk.capacity() == bytes.length
+                && previousChunk.duplicate().clear().equals(ByteBuffer.wrap(bytes))) {
+            return previousChunk;
+        }
+        ByteBuffer chunk = ByteBuffer.allocateDirect(bytes.length);
+        chunk.put(bytes);
+        return chunk;
+    }
+
+    private static int findSlot(final long[] mostSignificantBits, final long[] leastSignificantBits,
+                                final long[] offsets, final UUID id) {
+        int mask = offsets.length - 1;
+        long msb = id.getMostSignificantBits();
+        long lsb = id.getLeastSignificantBits();
+        int slot = (int) mix(msb ^ lsb) & mask;
+        while (offsets[slot] != EMPTY && (mostSignificantBits[slot] != msb || leastSignificantBits[slot] != lsb)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static long mix(final long value) {
+        long z = (value ^ (value >>> 33)) * 0xFF51AFD7ED558CCDL;
+        return z ^ (z >>> 33);
+    }
+
+    private static final class ProductEncoder {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+        private final DataOutputStream out = new DataOutputStream(bytes);
+
+        byte[] encode(final Product product) {
+            bytes.reset();
+            try {
+                writeUuid(product.getId());
+                writeString(product.getName());
+                writeString(product.getDescription());
+                writeBigDecimal(product.getPrice());
+                writeManufacturer(product.getManufacturer());
+                writeCategories(product.getCategories());
+                writeDateTime(product.getCreatedAt());
+                writeDateTime(product.getUpdatedAt());
+                writeReviews(product.getReviews());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return bytes.toByteArray();
+        }
+
+        private void writeUuid(final UUID uuid) throws IOException {
+            out.writeBoolean(uuid != null);
+            if (uuid != null) {
+                out.writeLong(uuid.getMostSignificantBits());
+                out.writeLong(uuid.getLeastSignificantBits());
+            }
+        }
+
+        private void writeString(final String value) throws IOException {
+            if (value == null) {
+                out.writeInt(-1);
+                return;
+            }
+            byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(encoded.length);
+            out.write(encoded);
+        }
+
+        private void writeBigDecimal(final BigDecimal value) throws IOException {
+            out.writeBoolean(value != null);
+            if (value != null) {
+                byte[] unscaled = value.unscaledValue().toByteArray();
+                out.writeInt(value.scale());
+                writeVarInt(unscaled.length);
+                out.write(unscaled);
+            }
+        }
+
+        private void writeVarInt(final int value) throws IOException {
+            int remaining = value;
+            while ((remaining & ~0x7F) != 0) {
+                out.writeByte((remaining & 0x7F) | 0x80);
+                remaining >>>= 7;
+            }
+            out.writeByte(remaining);
+        }
+
+        private void writeManufacturer(final Manufacturer manufacturer) throws IOException {
+            out.writeBoolean(manufacturer != null);
+            if (manufacturer != null) {
+                writeUuid(manufacturer.getId());
+                writeString(manufacturer.getName());
+                writeString(manufacturer.getAddress());
+                writeString(manufacturer.getContact());
+            }
+        }
+
+        private void writeCategories(final List<Category> categories) throws IOException {
+            if (categories == null) {
+                out.writeInt(-1);
+                return;
+            }
+            out.writeInt(categories.size());
+            for (Category category : categories) {
+                out.writeByte(category == null ? -1 : category.ordinal());
+            }
+        }
+
+        private void writeDateTime(final LocalDateTime dateTime) throws IOException {
+            out.writeBoolean(dateTime != null);
+            if (dateTime != null) {
+                out.writeLong(dateTime.toEpochSecond(ZoneOffset.UTC));
+                out.writeInt(dateTime.getNano());
+            }
+        }
+
+        private void writeReviews(final List<Review> reviews) throws IOException {
+            if (reviews == null) {
+                out.writeInt(-1);
+                return;
+            }
+            out.writeInt(reviews.size());
+            for (Review review : reviews) {
+                out.writeBoolean(review != null);
+                if (review == null) {
+                    continue;
+                }
+                writeString(review.getReviewerName());
+                writeString(review.getComment());
+                out.writeInt(review.getRating());
+                writeDateTime(review.getReviewDate());
+            }
+        }
+    }
+
+    private static final class ProductDecoder {
+
+        private final ByteBuffer chunk;
+        private int position;
+
+        ProductDecoder(final ByteBuffer chunk, final int position) {
+            this.chunk = chunk;
+            this.position = position;
+        }
+
+        Product decode() {
+            return Product.builder()
+                    .id(readUuid())
+                    .name(readString())
+                    .description(readString())
+                    .price(readBigDecimal())
+                    .manufacturer(readManufacturer())
+                    .categories(readCategories())
+                    .createdAt(readDateTime())
+                    .updatedAt(readDateTime())
+                    .reviews(readReviews())
+                    .build();
+        }
+
+        private boolean readBoolean() {
+            return chunk.get(position++) != 0;
+        }
+
+        private byte readByte() {
+            return chunk.get(position++);
+        }
+
+        private int readInt() {
+            int value = chunk.getInt(position);
+            position += Integer.BYTES;
+            return value;
+        }
+
+        private long readLong() {
+            long value = chunk.getLong(position);
+            position += Long.BYTES;
+            return value;
+        }
+
+        private byte[] readBytes(final int length) {
+            byte[] value = new byte[length];
+            chunk.get(position, value);
+            position += length;
+            return value;
+        }
+
+        private UUID readUuid() {
+            return readBoolean() ? new UUID(readLong(), readLong()) : null;
+        }
+
+        private String readString() {
+            int length = readInt();
+            return length < 0 ? null : new String(readBytes(length), StandardCharsets.UTF_8);
+        }
+
+        private BigDecimal readBigDecimal() {
+            if (!readBoolean()) {
+                return null;
+            }
+            int scale = readInt();
+            int length = readVarInt();
+            return new BigDecimal(new BigInteger(readBytes(length)), scale);
+        }
+
+        private int readVarInt() {
+            int value = 0;
+            int shift = 0;
+            byte next;
+            do {
+                next = readByte();
+                value |= (next & 0x7F) << shift;
+                shift += 7;
+            } while (next < 0);
+            return value;
+        }
+
+        private Manufacturer readManufacturer() {
+            if (!readBoolean()) {
+                return null;
+            }
+            return Manufacturer.builder()
+                    .id(readUuid())
+                    .name(readString())
+                    .address(readString())
+                    .contact(readString())
+                    .build();
+        }
+
+        private List<Category> readCategories() {
+            int count = readInt();
+            if (count < 0) {
+                return null;
+            }
+            List<Category> categories = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                byte ordinal = readByte();
+                categories.add(ordinal < 0 ? null : CATEGORIES[ordinal]);
+            }
+            return categories;
+        }
+
+        private LocalDateTime readDateTime() {
+            if (!readBoolean()) {
+                return null;
+            }
+            long epochSecond = readLong();
+            return LocalDateTime.ofEpochSecond(epochSecond, readInt(), ZoneOffset.UTC);
+        }
+
+        private List<Review> readReviews() {
+            int count = readInt();
+            if (count < 0) {
+                return null;
+            }
+            List<Review> reviews = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                if (!readBoolean()) {
+                    reviews.add(null);
+                    continue;
+                }
+                reviews.add(Review.builder()
+                        .reviewerName(readString())
+                        .comment(readString())
+                        .rating(readInt())
+                        .reviewDate(readDateTime())
+                        .build());
+            }
+            return reviews;
+        }
+    }
+}
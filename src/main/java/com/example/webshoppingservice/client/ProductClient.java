@@ -1,10 +1,16 @@
 package com.example.webshoppingservice.client;
 
 import com.example.webshoppingservice.model.Product;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
 
@@ -15,13 +21,49 @@ public class ProductClient {
 
     private final ProductConfig config;
 
+    private final ObjectMapper objectMapper;
+
+    private final Timer fetchTimer;
+
+    private final Timer deserializeTimer;
+
+    private final DistributionSummary catalogSize;
+
     @Autowired
-    public ProductClient(RestTemplate restTemplate, ProductConfig config) {
+    public ProductClient(RestTemplate restTemplate, ProductConfig config, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
         this.restTemplate = restTemplate;
         this.config = config;
+        this.objectMapper = objectMapper;
+        this.fetchTimer = Timer.builder("shopping.catalog.fetch")
+                .description("Time spent downloading the product catalog from search-service")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.deserializeTimer = Timer.builder("shopping.catalog.deserialize")
+                .description("Time spent deserializing the product catalog")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.catalogSize = DistributionSummary.builder("shopping.catalog.size")
+                .baseUnit("products")
+                .description("Number of products in a fetched catalog")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
     }
 
     public List<Product> getAllProducts() {
-        return Arrays.asList(restTemplate.getForObject(config.getUrl() + "/products", Product[].class));
+        byte[] body = fetchTimer.record(() -> restTemplate.getForObject(config.getUrl() + "/products", byte[].class));
+        Product[] products = deserializeTimer.record(() -> readProducts(body));
+        catalogSize.record(products.length);
+        return Arrays.asList(products);
+    }
+
+    private Product[] readProducts(final byte[] body) {
+        if (body == null) {
+            return new Product[0];
+        }
+        try {
+            return objectMapper.readValue(body, Product[].class);
+        } catch (IOException e) {
+            throw new RestClientException("Could not read products from search-service", e);
+        }
     }
 }
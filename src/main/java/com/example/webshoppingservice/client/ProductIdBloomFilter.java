@@ -0,0 +1,92 @@
+package com.example.webshoppingservice.client;
+
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * Immutable Bloom filter over product ids. {@link #mightContain(UUID)} never returns {@code false}
+ * for an id the filter was built from; it returns {@code true} for other ids with roughly the
+ * false-positive rate the filter was sized for.
+ */
+public final class ProductIdBloomFilter {
+
+    private static final double LN2 = Math.log(2);
+
+    private final long[] bits;
+    private final long bitCount;
+    private final int hashCount;
+    private final int insertedCount;
+
+    private ProductIdBloomFilter(final long bitCount, final int hashCount, final int insertedCount) {
+        this.bits = new long[(int) ((bitCount + Long.SIZE - 1) / Long.SIZE)];
+        this.bitCount = bitCount;
+        this.hashCount = hashCount;
+        this.insertedCount = insertedCount;
+    }
+
+    public static ProductIdBloomFilter create(final Collection<UUID> ids, final double falsePositiveRate) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("False-positive rate must be between 0 and 1: " + falsePositiveRate);
+        }
+        int expectedInsertions = Math.max(ids.size(), 1);
+        long bitCount = Math.max(Long.SIZE, (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (LN2 * LN2)));
+        int hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * LN2));
+
+        ProductIdBloomFilter filter = new ProductIdBloomFilter(bitCount, hashCount, ids.size());
+        ids.forEach(filter::put);
+        return filter;
+    }
+
+    public boolean mightContain(final UUID id) {
+        if (id == null) {
+            return false;
+        }
+        long hash1 = firstHash(id);
+        long hash2 = secondHash(id);
+        for (int i = 0; i < hashCount; i++) {
+            long index = Math.floorMod(hash1 + i * hash2, bitCount);
+            if ((bits[(int) (index >>> 6)] & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * False-positive rate expected for the number of ids the filter holds.
+     */
+    public double expectedFalsePositiveRate() {
+        return Math.pow(1 - Math.exp(-(double) hashCount * insertedCount / bitCount), hashCount);
+    }
+
+    public long bitCount() {
+        return bitCount;
+    }
+
+    private void put(final UUID id) {
+        if (id == null) {
+            return;
+        }
+        long hash1 = firstHash(id);
+        long hash2 = secondHash(id);
+        for (int i = 0; i < hashCount; i++) {
+            long index = Math.floorMod(hash1 + i * hash2, bitCount);
+            bits[(int) (index >>> 6)] |= 1L << index;
+        }
+    }
+
+    private static long firstHash(final UUID id) {
+        return mix(id.getMostSignificantBits() ^ id.getLeastSignificantBits());
+    }
+
+    private static long secondHash(final UUID id) {
+        return mix(id.getLeastSignificantBits() + 0x9E3779B97F4A7C15L * id.getMostSignificantBits()) | 1;
+    }
+
+    private static long mix(final long value) {
+        long z = value;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.webshoppingservice.client;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One pass of a batch of product lookups over the fetched catalog.
+ */
+@Name("com.example.webshoppingservice.ProductMatch")
+@Label("Product Match")
+@Category({"Web Shopping Service", "Catalog"})
+@Description("Requested product ids matched against the catalog for a batch of lookups")
+@StackTrace(false)
+class ProductMatchEvent extends jdk.jfr.Event {
+
+    @Label("Catalog Size")
+    int catalogSize;
+
+    @Label("Lookups")
+    int lookups;
+
+    @Label("Requested Products")
+    int requestedProducts;
+
+    @Label("Matched Products")
+    int matchedProducts;
+}
@@ -0,0 +1,251 @@
+package com.example.webshoppingservice.client;
+
+import com.example.webshoppingservice.model.Product;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Resolves product ids against the catalog in micro-batches. Requests arriving within
+ * {@link ProductResolverConfig#getWindow()} of each other, up to {@link ProductResolverConfig#getMaxBatchSize()},
+ * share a single {@link ProductClient#getAllProducts()} call and a single pass over the catalog.
+ * At most {@link ProductResolverConfig#getMaxQueuedBatches()} batches wait for a fetch slot; further batches
+ * fail with {@code 503}, and lookups whose caller gave up are dropped before their batch is fetched.
+ * Lookups the {@link LocalProductCatalog} can answer on its own skip the batch.
+ */
+@Service
+@Slf4j
+public class ProductResolver {
+
+    private final ProductClient productClient;
+    private final ProductResolverConfig config;
+    private final LocalProductCatalog localCatalog;
+    private final List<CatalogRefreshListener> catalogRefreshListeners;
+    private final ScheduledExecutorService scheduler;
+    private final ThreadPoolExecutor executor;
+    private final Timer matchTimer;
+    private final Timer queueDelayTimer;
+    private final DistributionSummary batchSize;
+    private final Counter rejectedBatches;
+    private final Counter abandonedLookups;
+
+    private final Object lock = new Object();
+    private List<PendingResolution> pending = new ArrayList<>();
+    private ScheduledFuture<?> scheduledFlush;
+
+    public ProductResolver(final ProductClient productClient,
+                           final ProductResolverConfig config,
+                           final LocalProductCatalog localCatalog,
+                           final List<CatalogRefreshListener> catalogRefreshListeners,
+                           final MeterRegistry meterRegistry) {
+        this.productClient = productClient;
+        this.config = config;
+        this.localCatalog = localCatalog;
+        this.catalogRefreshListeners = catalogRefreshListeners;
+        CustomizableThreadFactory schedulerThreadFactory = new CustomizableThreadFactory("product-resolver-window-");
+        schedulerThreadFactory.setDaemon(true);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(schedulerThreadFactory);
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("product-resolver-");
+        threadFactory.setDaemon(true);
+        this.executor = new ThreadPoolExecutor(config.getMaxConcurrentBatches(), config.getMaxConcurrentBatches(),
+                0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(config.getMaxQueuedBatches()), threadFactory);
+        this.matchTimer = Timer.builder("shopping.product.match")
+                .description("Time spent matching requested product ids against the catalog")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.queueDelayTimer = Timer.builder("shopping.catalog.batch.queue-delay")
+                .description("Time a product lookup waited for its batch to be sent")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.batchSize = DistributionSummary.builder("shopping.catalog.batch.size")
+                .baseUnit("requests")
+                .description("Number of product lookups resolved by one catalog fetch")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.rejectedBatches = Counter.builder("shopping.catalog.batch.rejected")
+                .description("Batches failed with 503 because too many batches were waiting for a catalog fetch")
+                .register(meterRegistry);
+        this.abandonedLookups = Counter.builder("shopping.catalog.batch.abandoned")
+                .baseUnit("requests")
+                .description("Product lookups dropped from their batch because the caller stopped waiting")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the catalog products whose id is in {@code productIds}, in catalog order.
+     */
+    public List<Product> resolveProducts(final Collection<UUID> productIds) {
+        CompletableFuture<List<Product>> result = resolve(productIds);
+        try {
+            return result.get(config.getMaxWait().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            result.cancel(false);
+            throw new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT, "Product catalog lookup timed out");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            result.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Product catalog lookup interrupted");
+        }
+    }
+
+    public CompletableFuture<List<Product>> resolve(final Collection<UUID> productIds) {
+        Set<UUID> requestedIds = new HashSet<>(productIds);
+        Optional<List<Product>> localProducts = localCatalog.findProducts(requestedIds);
+        if (localProducts.isPresent()) {
+            return CompletableFuture.completedFuture(localProducts.get());
+        }
+        PendingResolution resolution = new PendingResolution(requestedIds, System.nanoTime(), new CompletableFuture<>());
+        List<PendingResolution> fullBatch = null;
+        synchronized (lock) {
+            pending.add(resolution);
+            if (pending.size() >= config.getMaxBatchSize()) {
+                fullBatch = takePending();
+            } else if (pending.size() == 1) {
+                scheduledFlush = scheduler.schedule(this::flushPending, config.getWindow().toNanos(), TimeUnit.NANOSECONDS);
+            }
+        }
+        if (fullBatch != null) {
+            submit(fullBatch);
+        }
+        return resolution.result();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    private List<PendingResolution> takePending() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        List<PendingResolution> batch = pending;
+        pending = new ArrayList<>();
+        return batch;
+    }
+
+    private void flushPending() {
+        List<PendingResolution> batch;
+        synchronized (lock) {
+            batch = takePending();
+        }
+        if (!batch.isEmpty()) {
+            submit(batch);
+        }
+    }
+
+    private void submit(final List<PendingResolution> batch) {
+        try {
+            executor.execute(() -> resolveBatch(batch));
+        } catch (RejectedExecutionException e) {
+            rejectedBatches.increment();
+            ResponseStatusException error = new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Product catalog lookups are saturated");
+            batch.forEach(resolution -> resolution.result().completeExceptionally(error));
+        }
+    }
+
+    private void resolveBatch(final List<PendingResolution> pendingBatch) {
+        List<PendingResolution> batch = pendingBatch.stream()
+                .filter(resolution -> !resolution.result().isDone())
+                .toList();
+        abandonedLookups.increment(pendingBatch.size() - batch.size());
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        long sentAt = System.nanoTime();
+        batchSize.record(batch.size());
+        batch.forEach(resolution -> queueDelayTimer.record(sentAt - resolution.enqueuedAt(), TimeUnit.NANOSECONDS));
+
+        List<Product> catalog;
+        try {
+            catalog = fetchCatalog(batch.size());
+            matchTimer.record(() -> completeBatch(batch, catalog));
+        } catch (RuntimeException e) {
+            log.debug("Product catalog lookup failed for a batch of {} requests", batch.size(), e);
+            batch.forEach(resolution -> resolution.result().completeExceptionally(e));
+            return;
+        }
+        notifyCatalogRefresh(catalog);
+    }
+
+    private List<Product> fetchCatalog(final int lookups) {
+        CatalogFetchEvent fetchEvent = new CatalogFetchEvent();
+        fetchEvent.lookups = lookups;
+        fetchEvent.begin();
+        try {
+            List<Product> catalog = productClient.getAllProducts();
+            fetchEvent.catalogSize = catalog.size();
+            return catalog;
+        } catch (RuntimeException e) {
+            fetchEvent.failed = true;
+            throw e;
+        } finally {
+            fetchEvent.commit();
+        }
+    }
+
+    private void notifyCatalogRefresh(final List<Product> catalog) {
+        for (CatalogRefreshListener listener : catalogRefreshListeners) {
+            try {
+                listener.onCatalogRefresh(catalog);
+            } catch (RuntimeException e) {
+                log.warn("Catalog refresh listener {} failed", listener.getClass().getSimpleName(), e);
+            }
+        }
+    }
+
+    private void completeBatch(final List<PendingResolution> batch, final List<Product> catalog) {
+        ProductMatchEvent matchEvent = new ProductMatchEvent();
+        matchEvent.begin();
+        Set<UUID> requestedIds = new HashSet<>();
+        batch.forEach(resolution -> requestedIds.addAll(resolution.productIds()));
+        List<Product> requestedProducts = catalog.stream()
+                .filter(product -> requestedIds.contains(product.getId()))
+                .toList();
+        matchEvent.catalogSize = catalog.size();
+        matchEvent.lookups = batch.size();
+        matchEvent.requestedProducts = requestedIds.size();
+        matchEvent.matchedProducts = requestedProducts.size();
+        matchEvent.commit();
+
+        batch.forEach(resolution -> resolution.result().complete(requestedProducts.stream()
+                .filter(product -> resolution.productIds().contains(product.getId()))
+                .toList()));
+    }
+
+    private record PendingResolution(Set<UUID> productIds, long enqueuedAt, CompletableFuture<List<Product>> result) {
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.webshoppingservice.client;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "shopping.catalog.batching")
+@Getter
+@Setter
+public class ProductResolverConfig {
+
+    /**
+     * How long the first request of a batch waits for other requests to join it.
+     */
+    private Duration window = Duration.ofMillis(10);
+
+    /**
+     * Number of requests after which a batch is sent without waiting for the window to close.
+     */
+    private int maxBatchSize = 128;
+
+    /**
+     * Number of batches that may query search-service at the same time.
+     */
+    private int maxConcurrentBatches = 4;
+
+    /**
+     * Number of batches that may wait for a free fetch slot; lookups of further batches fail with 503.
+     */
+    private int maxQueuedBatches = 16;
+
+    /**
+     * How long a caller waits for its batch to be resolved.
+     */
+    private Duration maxWait = Duration.ofSeconds(10);
+}
@@ -0,0 +1,30 @@
+package com.example.webshoppingservice.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "shopping.jfr")
+@Getter
+@Setter
+public class JfrRecordingConfig {
+
+    /**
+     * Recording length when the request does not give one.
+     */
+    private Duration defaultDuration = Duration.ofSeconds(30);
+
+    /**
+     * Longest recording a request may ask for; the endpoint holds its request thread for the whole recording.
+     */
+    private Duration maxDuration = Duration.ofMinutes(5);
+
+    /**
+     * JFR settings to record with, {@code default} (about 1% overhead) or {@code profile} (more detail, about 2%).
+     */
+    private String settings = "profile";
+}
@@ -0,0 +1,108 @@
+package com.example.webshoppingservice.config;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.boot.actuate.endpoint.web.annotation.WebEndpoint;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@code POST /actuator/jfr} records the running service with JDK Flight Recorder for the requested
+ * {@code duration} (default {@link JfrRecordingConfig#getDefaultDuration()}) and returns the {@code .jfr} file.
+ * Only one recording runs at a time; a concurrent request gets {@code 429}.
+ */
+@Component
+@WebEndpoint(id = "jfr")
+@AllArgsConstructor
+@Slf4j
+public class JfrRecordingEndpoint {
+
+    private final JfrRecordingConfig config;
+    private final Lock lock = new ReentrantLock();
+
+    @WriteOperation(produces = "application/octet-stream")
+    public WebEndpointResponse<Resource> record(final @Nullable Duration duration) throws IOException {
+        Duration recordingDuration = duration != null ? duration : config.getDefaultDuration();
+        if (recordingDuration.isNegative() || recordingDuration.isZero() || recordingDuration.compareTo(config.getMaxDuration()) > 0) {
+            return new WebEndpointResponse<>(WebEndpointResponse.STATUS_BAD_REQUEST);
+        }
+        if (!lock.tryLock()) {
+            return new WebEndpointResponse<>(WebEndpointResponse.STATUS_TOO_MANY_REQUESTS);
+        }
+        try {
+            return new WebEndpointResponse<>(new TemporaryFileResource(recordToFile(recordingDuration)), WebEndpointResponse.STATUS_OK);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new WebEndpointResponse<>(WebEndpointResponse.STATUS_SERVICE_UNAVAILABLE);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Path recordToFile(final Duration duration) throws IOException, InterruptedException {
+        Configuration settings;
+        try {
+            settings = Configuration.getConfiguration(config.getSettings());
+        } catch (ParseException e) {
+            throw new IllegalStateException("Invalid JFR settings " + config.getSettings(), e);
+        }
+
+        Path file = Files.createTempFile("shopping-service-", ".jfr");
+        try (Recording recording = new Recording(settings)) {
+            recording.setName("shopping-service-actuator");
+            log.info("Recording JFR for {} with {} settings", duration, config.getSettings());
+            recording.start();
+            Thread.sleep(duration.toMillis());
+            recording.stop();
+            recording.dump(file);
+            return file;
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+    /**
+     * Deletes the recording once the response has been written.
+     */
+    private static final class TemporaryFileResource extends FileSystemResource {
+
+        private TemporaryFileResource(final Path file) {
+            super(file);
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return Files.newInputStream(getFile().toPath(), StandardOpenOption.READ, StandardOpenOption.DELETE_ON_CLOSE);
+        }
+
+        @Override
+        public ReadableByteChannel readableChannel() throws IOException {
+            return FileChannel.open(getFile().toPath(), StandardOpenOption.READ, StandardOpenOption.DELETE_ON_CLOSE);
+        }
+
+        @Override
+        public boolean isFile() {
+            // Keeps the response on the stream, which deletes the file when closed, rather than a zero-copy transfer.
+            return false;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.webshoppingservice.config;
+
+import org.bson.BsonBinary;
+import org.bson.BsonBinarySubType;
+import org.bson.UuidRepresentation;
+import org.bson.types.Binary;
+import org.bson.types.Decimal128;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
+import org.springframework.data.convert.WritingConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Stores {@link BigDecimal}s as Decimal128 instead of Spring Data's default String, so Mongo compares prices by value
+ * ({@code 12.5} equals {@code 12.50}); carts written before hold String prices, which the default mapping still reads.
+ * UUIDs are written by the driver's standard {@code uuidRepresentation} (binary subtype 4); carts written before that
+ * hold legacy Java subtype 3 UUIDs. {@code CartStorageSizeTestIT} measures both layouts.
+ */
+@Configuration
+public class MongoConfig {
+
+    @Bean
+    public MongoCustomConversions mongoCustomConversions() {
+        return new MongoCustomConversions(List.of(
+                BinaryToUuidConverter.INSTANCE,
+                BigDecimalToDecimal128Converter.INSTANCE,
+                Decimal128ToBigDecimalConverter.INSTANCE));
+    }
+
+    /**
+     * Reads the legacy Java subtype 3 layout as well as subtype 4, so documents written before the switch stay readable.
+     */
+    @ReadingConverter
+    enum BinaryToUuidConverter implements Converter<Binary, UUID> {
+        INSTANCE;
+
+        @Override
+        public UUID convert(final Binary source) {
+            UuidRepresentation representation = source.getType() == BsonBinarySubType.UUID_LEGACY.getValue()
+                    ? UuidRepresentation.JAVA_LEGACY
+                    : UuidRepresentation.STANDARD;
+            return new BsonBinary(source.getType(), source.getData()).asUuid(representation);
+        }
+    }
+
+    @WritingConverter
+    enum BigDecimalToDecimal128Converter implements Converter<BigDecimal, Decimal128> {
+        INSTANCE;
+
+        @Override
+        public Decimal128 convert(final BigDecimal source) {
+            return new Decimal128(source);
+        }
+    }
+
+    @ReadingConverter
+    enum Decimal128ToBigDecimalConverter implements Converter<Decimal128, BigDecimal> {
+        INSTANCE;
+
+        @Override
+        public BigDecimal convert(final Decimal128 source) {
+            return source.bigDecimalValue();
+        }
+    }
+}
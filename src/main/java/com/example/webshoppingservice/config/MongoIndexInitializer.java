@@ -0,0 +1,59 @@
+package com.example.webshoppingservice.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.stereotype.Component;
+
+/**
+ * Creates the indexes declared with {@code @Indexed} / {@code @CompoundIndex} on every mapped
+ * {@link Document} once the application is ready, instead of relying on lazy auto index creation.
+ */
+@Component
+@Slf4j
+public class MongoIndexInitializer {
+
+    private final MongoTemplate mongoTemplate;
+    private final boolean ensureIndexesOnStartup;
+
+    public MongoIndexInitializer(final MongoTemplate mongoTemplate,
+                                 final @Value("${shopping.mongo.ensure-indexes:true}") boolean ensureIndexesOnStartup) {
+        this.mongoTemplate = mongoTemplate;
+        this.ensureIndexesOnStartup = ensureIndexesOnStartup;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!ensureIndexesOnStartup) {
+            return;
+        }
+        try {
+            ensureIndexes();
+        } catch (DataAccessException e) {
+            log.warn("Could not ensure Mongo indexes, queries may fall back to collection scans", e);
+        }
+    }
+
+    public void ensureIndexes() {
+        var mappingContext = mongoTemplate.getConverter().getMappingContext();
+        IndexResolver indexResolver = new MongoPersistentEntityIndexResolver(mappingContext);
+
+        for (MongoPersistentEntity<?> entity : mappingContext.getPersistentEntities()) {
+            if (entity.isAnnotationPresent(Document.class)) {
+                IndexOperations indexOperations = mongoTemplate.indexOps(entity.getType());
+                indexResolver.resolveIndexFor(entity.getTypeInformation()).forEach(index -> {
+                    String indexName = indexOperations.ensureIndex(index);
+                    log.debug("Ensured index {} on {}", indexName, entity.getCollection());
+                });
+            }
+        }
+    }
+}
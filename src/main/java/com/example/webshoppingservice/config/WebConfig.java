@@ -0,0 +1,19 @@
+package com.example.webshoppingservice.config;
+
+import com.example.webshoppingservice.api.CartWriteAdmissionInterceptor;
+import lombok.AllArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+@AllArgsConstructor
+public class WebConfig implements WebMvcConfigurer {
+
+    private final CartWriteAdmissionInterceptor cartWriteAdmissionInterceptor;
+
+    @Override
+    public void addInterceptors(final InterceptorRegistry registry) {
+        registry.addInterceptor(cartWriteAdmissionInterceptor).addPathPatterns("/shopping/cart/**");
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.webshoppingservice.model;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Cart lifecycle event. {@code productIds} are the products the event is about: all products of a created, deleted
+ * or expired cart, or only the added or removed ones.
+ */
+public record CartEvent(CartEventType type, UUID cartId, List<UUID> productIds, Instant occurredAt) {
+}
@@ -0,0 +1,13 @@
+package com.example.webshoppingservice.model;
+
+public enum CartEventType {
+    CREATED,
+    PRODUCTS_ADDED,
+    PRODUCTS_REMOVED,
+    /**
+     * Cart changed, but its previous state was not available to tell which products were added or removed.
+     */
+    UPDATED,
+    DELETED,
+    EXPIRED;
+}
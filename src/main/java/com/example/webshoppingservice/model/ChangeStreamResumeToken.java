@@ -0,0 +1,30 @@
+package com.example.webshoppingservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * Resume token of the last change-stream event checkpointed by a tailer instance, stored as extended JSON. Tokens of
+ * instances that are gone are removed {@link #TIME_TO_LIVE} after their last update; by then the oplog no longer
+ * holds them anyway.
+ */
+@Document(collection = "changeStreamResumeTokens")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ChangeStreamResumeToken {
+
+    public static final String TIME_TO_LIVE = "7d";
+
+    @Id
+    private String id;
+    private String token;
+    @Indexed(expireAfter = TIME_TO_LIVE)
+    private Instant updatedAt;
+}
@@ -0,0 +1,43 @@
+package com.example.webshoppingservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Cart created for an {@code Idempotency-Key}. The key is the document id, so a second instance claiming the same key
+ * fails on the unique {@code _id} index; Mongo's TTL monitor removes records {@link #TIME_TO_LIVE} after creation.
+ * A completed record keeps the created cart as it was returned, so retries get the same response even after the cart
+ * was edited or expired.
+ */
+@Document(collection = "idempotencyRecords")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class IdempotencyRecord {
+
+    public static final String TIME_TO_LIVE = "10m";
+
+    @Id
+    private String key;
+    private String requestFingerprint;
+    private UUID cartId;
+    private boolean completed;
+    @Indexed(expireAfter = TIME_TO_LIVE)
+    private Instant createdAt;
+    /**
+     * When the request now creating {@link #cartId} claimed the key; moves forward when a timed-out claim is taken over.
+     */
+    private Instant claimedAt;
+    /**
+     * The created cart, written by the mapping converter into a plain document so that the indexes mapped on
+     * {@link ShoppingCart} are not built on this collection too.
+     */
+    private org.bson.Document shoppingCart;
+}
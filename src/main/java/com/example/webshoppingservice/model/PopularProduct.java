@@ -0,0 +1,9 @@
+package com.example.webshoppingservice.model;
+
+import java.util.UUID;
+
+/**
+ * Product with the estimated number of times it was put into carts, net of removals, in the popularity window.
+ */
+public record PopularProduct(UUID productId, long count) {
+}
@@ -5,6 +5,8 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
@@ -21,5 +23,12 @@ public class ShoppingCart {
     @Id
     private UUID id;
     private List<Product> products;
+    @Indexed
     private LocalDateTime insertDateTime;
+    @Version
+    private Long version;
+
+    public ShoppingCart(final UUID id, final List<Product> products, final LocalDateTime insertDateTime) {
+        this(id, products, insertDateTime, null);
+    }
 }
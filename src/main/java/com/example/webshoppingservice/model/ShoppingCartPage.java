@@ -0,0 +1,7 @@
+package com.example.webshoppingservice.model;
+
+/**
+ * Cart holding one page of its products, with the number of products in the whole cart.
+ */
+public record ShoppingCartPage(ShoppingCart shoppingCart, int totalProducts) {
+}
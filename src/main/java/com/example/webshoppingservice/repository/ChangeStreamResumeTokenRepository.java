@@ -0,0 +1,7 @@
+package com.example.webshoppingservice.repository;
+
+import com.example.webshoppingservice.model.ChangeStreamResumeToken;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+public interface ChangeStreamResumeTokenRepository extends MongoRepository<ChangeStreamResumeToken, String> {
+}
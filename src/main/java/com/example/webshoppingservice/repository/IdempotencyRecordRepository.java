@@ -0,0 +1,7 @@
+package com.example.webshoppingservice.repository;
+
+import com.example.webshoppingservice.model.IdempotencyRecord;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+public interface IdempotencyRecordRepository extends MongoRepository<IdempotencyRecord, String>, IdempotencyRecordRepositoryCustom {
+}
@@ -0,0 +1,39 @@
+package com.example.webshoppingservice.repository;
+
+import com.example.webshoppingservice.model.IdempotencyRecord;
+import com.example.webshoppingservice.model.ShoppingCart;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Conditional writes on a claimed {@code Idempotency-Key}. A claim is identified by the id of the cart its request
+ * creates, so a request whose claim was taken over can no longer complete or release the key.
+ */
+public interface IdempotencyRecordRepositoryCustom {
+
+    /**
+     * Hands the unfinished claim of the request creating {@code claimedCartId} to a request creating {@code cartId}.
+     *
+     * @return whether this call took the claim over; only one caller can take over a given claim
+     */
+    boolean takeOverClaim(String key, UUID claimedCartId, UUID cartId, Instant claimedAt);
+
+    /**
+     * Marks the claim of the request that created {@code shoppingCart} completed and stores the cart to answer
+     * retries with.
+     *
+     * @return false if the claim was taken over in between
+     */
+    boolean completeClaim(String key, ShoppingCart shoppingCart);
+
+    /**
+     * Reads the cart stored by {@link #completeClaim(String, ShoppingCart)} in a completed record.
+     */
+    ShoppingCart readShoppingCart(IdempotencyRecord idempotencyRecord);
+
+    /**
+     * Deletes the unfinished claim of the request creating {@code cartId}, unless it was taken over in between.
+     */
+    void releaseClaim(String key, UUID cartId);
+}
@@ -0,0 +1,53 @@
+package com.example.webshoppingservice.repository;
+
+import com.example.webshoppingservice.model.IdempotencyRecord;
+import com.example.webshoppingservice.model.ShoppingCart;
+import lombok.AllArgsConstructor;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+@AllArgsConstructor
+class IdempotencyRecordRepositoryCustomImpl implements IdempotencyRecordRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public boolean takeOverClaim(final String key, final UUID claimedCartId, final UUID cartId, final Instant claimedAt) {
+        Update update = new Update()
+                .set("cartId", cartId)
+                .set("claimedAt", claimedAt);
+        return mongoTemplate.updateFirst(openClaim(key, claimedCartId), update, IdempotencyRecord.class).getModifiedCount() == 1;
+    }
+
+    @Override
+    public boolean completeClaim(final String key, final ShoppingCart shoppingCart) {
+        Document storedCart = new Document();
+        mongoTemplate.getConverter().write(shoppingCart, storedCart);
+        Update update = new Update()
+                .set("completed", true)
+                .set("shoppingCart", storedCart);
+        return mongoTemplate.updateFirst(openClaim(key, shoppingCart.getId()), update, IdempotencyRecord.class).getModifiedCount() == 1;
+    }
+
+    @Override
+    public ShoppingCart readShoppingCart(final IdempotencyRecord idempotencyRecord) {
+        return mongoTemplate.getConverter().read(ShoppingCart.class, idempotencyRecord.getShoppingCart());
+    }
+
+    @Override
+    public void releaseClaim(final String key, final UUID cartId) {
+        mongoTemplate.remove(openClaim(key, cartId), IdempotencyRecord.class);
+    }
+
+    private static Query openClaim(final String key, final UUID cartId) {
+        return query(where("_id").is(key).and("cartId").is(cartId).and("completed").is(false));
+    }
+}
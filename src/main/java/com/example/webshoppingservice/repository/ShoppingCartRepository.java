@@ -3,15 +3,12 @@ package com.example.webshoppingservice.repository;
 import com.example.webshoppingservice.model.ShoppingCart;
 import org.springframework.data.mongodb.repository.MongoRepository;
 
-import java.time.LocalDateTime;
 import java.util.Optional;
 import java.util.UUID;
 
-public interface ShoppingCartRepository extends MongoRepository<ShoppingCart, String> {
+public interface ShoppingCartRepository extends MongoRepository<ShoppingCart, UUID>, ShoppingCartRepositoryCustom {
     Optional<ShoppingCart> findShoppingCartById(UUID id);
 
     void deleteShoppingCartById(UUID id);
 
-    void deleteShoppingCartsByInsertDateTimeIsBefore(LocalDateTime time);
-
 }
@@ -0,0 +1,60 @@
+package com.example.webshoppingservice.repository;
+
+import com.example.webshoppingservice.model.ShoppingCart;
+import com.example.webshoppingservice.model.ShoppingCartPage;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface ShoppingCartRepositoryCustom {
+
+    /**
+     * Set on carts by {@link #expireShoppingCarts(LocalDateTime, boolean)} right before they are deleted, so the
+     * pre-image of the delete tells expiry from a user's delete.
+     */
+    String EXPIRED_AT = "expiredAt";
+
+    /**
+     * Deletes every cart inserted before {@code insertedBefore}. With {@code tagged}, the carts are first tagged with
+     * {@link #EXPIRED_AT} and only tagged ones are deleted; a cart saved between the two writes loses the tag and is
+     * kept until the next run. Both writes select carts by the indexed {@code insertDateTime}.
+     *
+     * @return number of carts deleted
+     */
+    long expireShoppingCarts(LocalDateTime insertedBefore, boolean tagged);
+
+    /**
+     * Adds the products of the source cart to the target cart with a single update, without going through the
+     * catalog, then deletes the source if it did not change in between. With {@code expectedTargetVersion}, the
+     * target is only updated while it still has that version.
+     *
+     * @return the merged target cart, or empty when either cart does not exist (both are then left unchanged)
+     * @throws org.springframework.dao.OptimisticLockingFailureException if the target no longer has
+     *                                                                   {@code expectedTargetVersion} (nothing is
+     *                                                                   changed), or the source kept changing (the
+     *                                                                   target then holds its products and the source
+     *                                                                   still exists)
+     */
+    Optional<ShoppingCart> mergeShoppingCarts(UUID targetId, UUID sourceId, Long expectedTargetVersion);
+
+    /**
+     * Sets the price of every matching product in every cart holding it at a different price, as one unordered bulk
+     * write with one multi-update per product. Carts are never read.
+     *
+     * @return number of carts modified
+     */
+    long repriceProducts(Map<UUID, BigDecimal> prices);
+
+    /**
+     * Reads the cart with only {@code limit} products from {@code offset} (all remaining when {@code limit} is null),
+     * each with only the given product properties plus its id (all properties when empty). Slicing and projection
+     * run in Mongo, so the rest of the cart is never sent.
+     *
+     * @throws IllegalArgumentException if a product property does not exist
+     */
+    Optional<ShoppingCartPage> findShoppingCartPage(UUID cartId, int offset, Integer limit, Collection<String> productFields);
+}
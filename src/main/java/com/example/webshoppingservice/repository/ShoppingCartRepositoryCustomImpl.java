@@ -0,0 +1,150 @@
+package com.example.webshoppingservice.repository;
+
+import com.example.webshoppingservice.model.Product;
+import com.example.webshoppingservice.model.ShoppingCart;
+import com.example.webshoppingservice.model.ShoppingCartPage;
+import lombok.AllArgsConstructor;
+import org.bson.Document;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+@AllArgsConstructor
+class ShoppingCartRepositoryCustomImpl implements ShoppingCartRepositoryCustom {
+
+    private static final int MAX_MERGE_ATTEMPTS = 3;
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public Optional<ShoppingCart> mergeShoppingCarts(final UUID targetId, final UUID sourceId, final Long expectedTargetVersion) {
+        String collection = mongoTemplate.getCollectionName(ShoppingCart.class);
+        ShoppingCart merged = null;
+        Long targetVersion = expectedTargetVersion;
+
+        for (int attempt = 0; attempt < MAX_MERGE_ATTEMPTS; attempt++) {
+            Document source = mongoTemplate.findOne(query(where("_id").is(sourceId)), Document.class, collection);
+            if (source == null) {
+                return Optional.ofNullable(merged);
+            }
+
+            // The target is updated before the source is deleted, so a failure in between leaves the products in
+            // both carts rather than in neither. Stored product sub-documents are added as they are: no
+            // re-conversion, so $addToSet compares them field-for-field and a repeated attempt adds nothing twice.
+            List<Document> sourceProducts = source.getList("products", Document.class, List.of());
+            Update update = new Update()
+                    .addToSet("products").each(sourceProducts.toArray())
+                    .inc("version", 1);
+            Query target = query(where("_id").is(targetId));
+            if (targetVersion != null) {
+                target.addCriteria(where("version").is(targetVersion));
+            }
+            merged = mongoTemplate.findAndModify(target, update,
+                    FindAndModifyOptions.options().returnNew(true), ShoppingCart.class, collection);
+            if (merged == null) {
+                if (targetVersion != null && mongoTemplate.exists(query(where("_id").is(targetId)), collection)) {
+                    throw new OptimisticLockingFailureException("Shopping cart " + targetId + " no longer has version " + targetVersion);
+                }
+                return Optional.empty();
+            }
+            // A repeated attempt only has to find the target as this attempt left it.
+            if (targetVersion != null) {
+                targetVersion = merged.getVersion();
+            }
+
+            // Only the version whose products were added is deleted; a source edited in between is merged again.
+            Query mergedSource = query(where("_id").is(sourceId).and("version").is(source.get("version")));
+            if (mongoTemplate.remove(mergedSource, collection).getDeletedCount() > 0) {
+                return Optional.of(merged);
+            }
+        }
+        throw new OptimisticLockingFailureException("Shopping cart " + sourceId + " kept changing while being merged");
+    }
+
+    @Override
+    public long expireShoppingCarts(final LocalDateTime insertedBefore, final boolean tagged) {
+        if (!tagged) {
+            return mongoTemplate.remove(query(where("insertDateTime").lt(insertedBefore)), ShoppingCart.class).getDeletedCount();
+        }
+        mongoTemplate.updateMulti(query(where("insertDateTime").lt(insertedBefore)),
+                new Update().set(EXPIRED_AT, Instant.now()), ShoppingCart.class);
+        return mongoTemplate.remove(query(where("insertDateTime").lt(insertedBefore).and(EXPIRED_AT).exists(true)),
+                ShoppingCart.class).getDeletedCount();
+    }
+
+    @Override
+    public long repriceProducts(final Map<UUID, BigDecimal> prices) {
+        if (prices.isEmpty()) {
+            return 0;
+        }
+        BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ShoppingCart.class);
+        prices.forEach((productId, price) -> bulkOperations.updateMulti(
+                query(where("products").elemMatch(where("id").is(productId).and("price").ne(price))),
+                new Update()
+                        .set("products.$[product].price", price)
+                        .filterArray(where("product._id").is(productId))
+                        .inc("version", 1)));
+        return bulkOperations.execute().getModifiedCount();
+    }
+
+    @Override
+    public Optional<ShoppingCartPage> findShoppingCartPage(final UUID cartId,
+                                                           final int offset,
+                                                           final Integer limit,
+                                                           final Collection<String> productFields) {
+        Document products = new Document("$ifNull", List.of("$products", List.of()));
+        Object count = limit != null ? limit : new Document("$max", List.of(new Document("$size", products), 1));
+        Object page = new Document("$slice", List.of(products, offset, count));
+        if (!productFields.isEmpty()) {
+            page = new Document("$map", new Document("input", page)
+                    .append("as", "product")
+                    .append("in", productProjection(productFields)));
+        }
+
+        List<Document> pipeline = List.of(
+                new Document("$match", new Document("_id", cartId)),
+                new Document("$project", new Document("insertDateTime", 1)
+                        .append("version", 1)
+                        .append("totalProducts", new Document("$size", products))
+                        .append("products", page)));
+
+        String collection = mongoTemplate.getCollectionName(ShoppingCart.class);
+        Document result = mongoTemplate.getCollection(collection).aggregate(pipeline).first();
+        if (result == null) {
+            return Optional.empty();
+        }
+        ShoppingCart shoppingCart = mongoTemplate.getConverter().read(ShoppingCart.class, result);
+        return Optional.of(new ShoppingCartPage(shoppingCart, result.getInteger("totalProducts")));
+    }
+
+    private Document productProjection(final Collection<String> productFields) {
+        MongoPersistentEntity<?> productEntity = mongoTemplate.getConverter().getMappingContext()
+                .getRequiredPersistentEntity(Product.class);
+        Document projection = new Document("_id", "$$product._id");
+        for (String productField : productFields) {
+            MongoPersistentProperty property = productEntity.getPersistentProperty(productField);
+            if (property == null) {
+                throw new IllegalArgumentException("Unknown product field: " + productField);
+            }
+            projection.append(property.getFieldName(), "$$product." + property.getFieldName());
+        }
+        return projection;
+    }
+}
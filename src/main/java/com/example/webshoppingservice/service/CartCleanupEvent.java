@@ -0,0 +1,24 @@
+package com.example.webshoppingservice.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timestamp;
+
+/**
+ * One {@link ShoppingService#deleteOldCarts()} run.
+ */
+@Name("com.example.webshoppingservice.CartCleanup")
+@Label("Cart Cleanup")
+@Category({"Web Shopping Service", "Repository"})
+@StackTrace(false)
+class CartCleanupEvent extends jdk.jfr.Event {
+
+    @Label("Expired Before")
+    @Timestamp(Timestamp.MILLISECONDS_SINCE_EPOCH)
+    long expiredBefore;
+
+    @Label("Deleted Carts")
+    long deletedCarts;
+}
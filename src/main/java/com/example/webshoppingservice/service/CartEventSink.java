@@ -0,0 +1,12 @@
+package com.example.webshoppingservice.service;
+
+import com.example.webshoppingservice.model.CartEvent;
+
+/**
+ * Receives cart lifecycle events from {@link ShoppingCartChangeStreamTailer}, in change-stream order, on the tailer
+ * thread. Implementations that do slow work should hand events off to their own thread.
+ */
+public interface CartEventSink {
+
+    void publish(CartEvent event);
+}
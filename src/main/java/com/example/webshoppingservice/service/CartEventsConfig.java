@@ -0,0 +1,50 @@
+package com.example.webshoppingservice.service;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "shopping.cart.events")
+@Getter
+@Setter
+public class CartEventsConfig {
+
+    /**
+     * Change streams need a replica set or sharded cluster, so the tailer is off unless enabled.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Key of this instance's resume token. Every instance tails the stream for its own subscribers, so each needs its
+     * own key; a stable one, such as a StatefulSet pod name, lets a restarted instance resume where it stopped.
+     */
+    private String instanceId = "local";
+
+    /**
+     * Number of changes after which the resume token is stored.
+     */
+    private int checkpointEvery = 100;
+
+    /**
+     * Time after which the resume token is stored with the next change, however few changes came before it.
+     */
+    private Duration checkpointInterval = Duration.ofSeconds(1);
+
+    /**
+     * Delay before the stream is reopened after it failed; doubled after every failure up to {@link #maxRestartBackoff}.
+     */
+    private Duration restartBackoff = Duration.ofSeconds(1);
+
+    private Duration maxRestartBackoff = Duration.ofMinutes(1);
+
+    /**
+     * Events waiting to be sent to server-sent-event subscribers; further events are dropped.
+     */
+    private int subscriberQueueCapacity = 1_000;
+
+    private Duration subscriberTimeout = Duration.ofMinutes(30);
+}
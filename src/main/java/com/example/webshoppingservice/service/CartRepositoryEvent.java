@@ -0,0 +1,22 @@
+package com.example.webshoppingservice.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One shopping cart read or write against Mongo, timed alongside {@code shopping.cart.repository}.
+ */
+@Name("com.example.webshoppingservice.CartRepository")
+@Label("Cart Repository Call")
+@Category({"Web Shopping Service", "Repository"})
+@StackTrace(false)
+class CartRepositoryEvent extends jdk.jfr.Event {
+
+    @Label("Cart Id")
+    String cartId;
+
+    @Label("Operation")
+    String operation;
+}
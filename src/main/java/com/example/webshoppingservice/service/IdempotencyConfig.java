@@ -0,0 +1,26 @@
+package com.example.webshoppingservice.service;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "shopping.cart.idempotency")
+@Getter
+@Setter
+public class IdempotencyConfig {
+
+    /**
+     * How long an {@code Idempotency-Key} stays claimed by a request that has not finished creating its cart; after
+     * that, a retry with the key takes it over instead of getting {@code 409}.
+     */
+    private Duration claimTimeout = Duration.ofSeconds(30);
+
+    /**
+     * How long a request waits for an in-flight request with the same key on this instance before getting {@code 409}.
+     */
+    private Duration inFlightMaxWait = Duration.ofSeconds(5);
+}
@@ -0,0 +1,217 @@
+package com.example.webshoppingservice.service;
+
+import com.example.webshoppingservice.model.IdempotencyRecord;
+import com.example.webshoppingservice.model.ShoppingCart;
+import com.example.webshoppingservice.model.ShoppingCartRequestBody;
+import com.example.webshoppingservice.repository.IdempotencyRecordRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+/**
+ * Creates at most one shopping cart per {@code Idempotency-Key}. Requests with a key already being handled
+ * by this instance wait up to {@link IdempotencyConfig#getInFlightMaxWait()} for that result; a key completed earlier, or by another instance, replays the cart stored
+ * with it without resolving products again. A key whose request has not finished within
+ * {@link IdempotencyConfig#getClaimTimeout()} (its instance crashed, or could not store the result) is taken over by
+ * the next request with it. Reusing a key with different products is rejected.
+ */
+@Service
+@Slf4j
+public class IdempotentShoppingCartCreator {
+
+    /**
+     * Longest accepted {@code Idempotency-Key}.
+     */
+    public static final int MAX_KEY_LENGTH = 255;
+
+    private static final String IN_PROGRESS = "Request with this Idempotency-Key is still in progress";
+
+    private final ShoppingService shoppingService;
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final IdempotencyConfig config;
+    private final Clock clock;
+    private final Map<String, InFlightCreation> inFlightCreations = new ConcurrentHashMap<>();
+    private final Counter createdCarts;
+    private final Counter attachedRequests;
+    private final Counter replayedRequests;
+    private final Counter takenOverRequests;
+    private final Counter rejectedRequests;
+
+    @Autowired
+    public IdempotentShoppingCartCreator(final ShoppingService shoppingService,
+                                         final IdempotencyRecordRepository idempotencyRecordRepository,
+                                         final IdempotencyConfig config,
+                                         final MeterRegistry meterRegistry) {
+        this(shoppingService, idempotencyRecordRepository, config, meterRegistry, Clock.systemUTC());
+    }
+
+    IdempotentShoppingCartCreator(final ShoppingService shoppingService,
+                                  final IdempotencyRecordRepository idempotencyRecordRepository,
+                                  final IdempotencyConfig config,
+                                  final MeterRegistry meterRegistry,
+                                  final Clock clock) {
+        this.shoppingService = shoppingService;
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.config = config;
+        this.clock = clock;
+        this.createdCarts = counter("created", "Idempotent cart creations that created a cart", meterRegistry);
+        this.attachedRequests = counter("attached", "Idempotent cart creations that waited for an in-flight request with the same key", meterRegistry);
+        this.replayedRequests = counter("replayed", "Idempotent cart creations answered with the cart stored for the key", meterRegistry);
+        this.takenOverRequests = counter("taken-over", "Idempotent cart creations that took over a key whose claim had timed out", meterRegistry);
+        this.rejectedRequests = counter("rejected", "Idempotent cart creations rejected for a different body or a key still in progress", meterRegistry);
+    }
+
+    public ShoppingCart createShoppingCart(final String idempotencyKey, final ShoppingCartRequestBody requestBody) {
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Idempotency-Key must have 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+        String fingerprint = fingerprint(requestBody);
+        InFlightCreation creation = new InFlightCreation(fingerprint, new CompletableFuture<>());
+        InFlightCreation inFlightCreation = inFlightCreations.putIfAbsent(idempotencyKey, creation);
+        if (inFlightCreation == null) {
+            return createOnce(idempotencyKey, requestBody, creation);
+        }
+
+        checkFingerprint(fingerprint, inFlightCreation.fingerprint());
+        attachedRequests.increment();
+        try {
+            return inFlightCreation.result().get(config.getInFlightMaxWait().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.debug("Timed out waiting for in-flight request with Idempotency-Key {}", idempotencyKey);
+            throw conflict(IN_PROGRESS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Shopping cart creation interrupted");
+        }
+    }
+
+    private ShoppingCart createOnce(final String idempotencyKey, final ShoppingCartRequestBody requestBody, final InFlightCreation creation) {
+        try {
+            ShoppingCart shoppingCart = claimAndCreate(idempotencyKey, requestBody, creation.fingerprint());
+            creation.result().complete(shoppingCart);
+            return shoppingCart;
+        } catch (RuntimeException e) {
+            creation.result().completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlightCreations.remove(idempotencyKey, creation);
+        }
+    }
+
+    private ShoppingCart claimAndCreate(final String idempotencyKey, final ShoppingCartRequestBody requestBody, final String fingerprint) {
+        Instant now = clock.instant();
+        IdempotencyRecord idempotencyRecord = new IdempotencyRecord(idempotencyKey, fingerprint, UUID.randomUUID(), false, now, now, null);
+        try {
+            idempotencyRecordRepository.insert(idempotencyRecord);
+        } catch (DuplicateKeyException e) {
+            return replayOrTakeOver(idempotencyKey, requestBody, fingerprint);
+        }
+        return create(idempotencyKey, requestBody, idempotencyRecord.getCartId());
+    }
+
+    private ShoppingCart create(final String idempotencyKey, final ShoppingCartRequestBody requestBody, final UUID cartId) {
+        ShoppingCart shoppingCart;
+        try {
+            shoppingCart = shoppingService.createShoppingCart(requestBody, cartId);
+        } catch (RuntimeException e) {
+            // Lets a retry with the same key try again instead of replaying the failure.
+            idempotencyRecordRepository.releaseClaim(idempotencyKey, cartId);
+            throw e;
+        }
+        createdCarts.increment();
+        try {
+            if (!idempotencyRecordRepository.completeClaim(idempotencyKey, shoppingCart)) {
+                log.warn("Idempotency-Key {} was taken over while cart {} was being created", idempotencyKey, cartId);
+            }
+        } catch (RuntimeException e) {
+            // The cart exists, so it is still returned; the key is taken over by a retry once its claim times out.
+            log.warn("Could not complete Idempotency-Key {} for cart {}", idempotencyKey, cartId, e);
+        }
+        return shoppingCart;
+    }
+
+    private ShoppingCart replayOrTakeOver(final String idempotencyKey, final ShoppingCartRequestBody requestBody, final String fingerprint) {
+        IdempotencyRecord idempotencyRecord = idempotencyRecordRepository.findById(idempotencyKey)
+                .orElseThrow(() -> conflict(IN_PROGRESS));
+        checkFingerprint(fingerprint, idempotencyRecord.getRequestFingerprint());
+        if (idempotencyRecord.isCompleted()) {
+            replayedRequests.increment();
+            log.debug("Replaying shopping cart {} for Idempotency-Key {}", idempotencyRecord.getCartId(), idempotencyKey);
+            return idempotencyRecordRepository.readShoppingCart(idempotencyRecord);
+        }
+
+        Instant now = clock.instant();
+        UUID cartId = UUID.randomUUID();
+        if (now.isBefore(idempotencyRecord.getClaimedAt().plus(config.getClaimTimeout()))
+                || !idempotencyRecordRepository.takeOverClaim(idempotencyKey, idempotencyRecord.getCartId(), cartId, now)) {
+            throw conflict(IN_PROGRESS);
+        }
+        takenOverRequests.increment();
+        log.info("Took over Idempotency-Key {} claimed at {} for cart {}", idempotencyKey, idempotencyRecord.getClaimedAt(), idempotencyRecord.getCartId());
+        return create(idempotencyKey, requestBody, cartId);
+    }
+
+    private void checkFingerprint(final String fingerprint, final String storedFingerprint) {
+        if (!fingerprint.equals(storedFingerprint)) {
+            rejectedRequests.increment();
+            throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, "Idempotency-Key was used with different products");
+        }
+    }
+
+    private ResponseStatusException conflict(final String reason) {
+        rejectedRequests.increment();
+        return new ResponseStatusException(HttpStatus.CONFLICT, reason);
+    }
+
+    /**
+     * Hash of the requested product ids; order and duplicates do not change the created cart, so they are ignored.
+     */
+    static String fingerprint(final ShoppingCartRequestBody requestBody) {
+        String productIds = requestBody.products().stream()
+                .map(UUID::toString)
+                .sorted()
+                .distinct()
+                .collect(Collectors.joining(","));
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(productIds.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Counter counter(final String result, final String description, final MeterRegistry meterRegistry) {
+        return Counter.builder("shopping.cart.idempotency")
+                .tag("result", result)
+                .description(description)
+                .register(meterRegistry);
+    }
+
+    private record InFlightCreation(String fingerprint, CompletableFuture<ShoppingCart> result) {
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.webshoppingservice.service;
+
+import com.example.webshoppingservice.model.PopularProduct;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.MultiGauge;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+/**
+ * Products most often put into carts within a sliding window, net of removals. Counts live in a
+ * {@link SlidingWindowCountMinSketch}; the ranking is taken over a bounded set of candidates that is pruned back to
+ * {@link PopularProductsConfig#getCandidates()} by whichever thread finds it full. Recording a product costs one
+ * sketch update and at most one estimate, and never blocks.
+ */
+@Component
+public class PopularProducts {
+
+    private static final Comparator<PopularProduct> BY_COUNT = Comparator.comparingLong(PopularProduct::count);
+
+    private final PopularProductsConfig config;
+    private final Clock clock;
+    private final SlidingWindowCountMinSketch sketch;
+    private final Set<UUID> candidates = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean pruning = new AtomicBoolean();
+    private final MultiGauge popularProductsGauge;
+    private volatile long admissionThreshold;
+
+    @Autowired
+    public PopularProducts(final PopularProductsConfig config, final MeterRegistry meterRegistry) {
+        this(config, meterRegistry, Clock.systemUTC());
+    }
+
+    PopularProducts(final PopularProductsConfig config, final MeterRegistry meterRegistry, final Clock clock) {
+        this.config = config;
+        this.clock = clock;
+        this.sketch = new SlidingWindowCountMinSketch(config.getDepth(), config.getWidth(), config.getBuckets(), config.getWindow());
+        this.popularProductsGauge = MultiGauge.builder("shopping.products.popular")
+                .description("Estimated times the product was put into carts in the popularity window, net of removals")
+                .register(meterRegistry);
+    }
+
+    public void recordAdded(final Collection<UUID> productIds) {
+        long now = clock.millis();
+        for (UUID productId : productIds) {
+            sketch.add(productId, 1, now);
+            if (!candidates.contains(productId)
+                    && (candidates.size() < config.getCandidates() || sketch.estimate(productId, now) >= admissionThreshold)) {
+                candidates.add(productId);
+                if (candidates.size() > 2 * config.getCandidates()) {
+                    prune(now);
+                }
+            }
+        }
+    }
+
+    public void recordRemoved(final Collection<UUID> productIds) {
+        long now = clock.millis();
+        for (UUID productId : productIds) {
+            sketch.add(productId, -1, now);
+        }
+    }
+
+    public List<PopularProduct> topProducts() {
+        long now = clock.millis();
+        PriorityQueue<PopularProduct> top = new PriorityQueue<>(config.getTopK() + 1, BY_COUNT);
+        for (UUID candidate : candidates) {
+            long count = sketch.estimate(candidate, now);
+            if (count > 0) {
+                top.add(new PopularProduct(candidate, count));
+                if (top.size() > config.getTopK()) {
+                    top.poll();
+                }
+            }
+        }
+        return top.stream().sorted(BY_COUNT.reversed()).toList();
+    }
+
+    /**
+     * Also prunes the candidates, so the admission threshold follows counts leaving the window.
+     */
+    @Scheduled(fixedRate = 15_000)
+    public void refreshGauges() {
+        prune(clock.millis());
+        List<PopularProduct> top = topProducts();
+        popularProductsGauge.register(IntStream.range(0, top.size())
+                .<MultiGauge.Row<?>>mapToObj(rank -> MultiGauge.Row.of(
+                        Tags.of("rank", String.valueOf(rank + 1), "productId", top.get(rank).productId().toString()),
+                        top.get(rank).count()))
+                .toList(), true);
+    }
+
+    int trackedCandidates() {
+        return candidates.size();
+    }
+
+    private void prune(final long now) {
+        if (!pruning.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            List<PopularProduct> ranked = candidates.stream()
+                    .map(candidate -> new PopularProduct(candidate, sketch.estimate(candidate, now)))
+                    .sorted(BY_COUNT.reversed())
+                    .toList();
+            ranked.subList(Math.min(config.getCandidates(), ranked.size()), ranked.size())
+                    .forEach(dropped -> candidates.remove(dropped.productId()));
+            admissionThreshold = ranked.isEmpty() ? 0 : ranked.get(Math.min(config.getCandidates(), ranked.size()) - 1).count();
+        } finally {
+            pruning.set(false);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.webshoppingservice.service;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "shopping.products.popular")
+@Getter
+@Setter
+public class PopularProductsConfig {
+
+    /**
+     * Sliding window products are ranked over, advanced in steps of {@code window / buckets}.
+     */
+    private Duration window = Duration.ofMinutes(5);
+
+    private int buckets = 5;
+
+    private int topK = 10;
+
+    /**
+     * Products tracked as top-K candidates; more candidates make it likelier that a product climbing fast is ranked.
+     */
+    private int candidates = 100;
+
+    /**
+     * Rows of the Count-Min sketch; an estimate is off by more than {@code e / width} of the window total with
+     * probability {@code e^-depth}.
+     */
+    private int depth = 4;
+
+    private int width = 4096;
+}
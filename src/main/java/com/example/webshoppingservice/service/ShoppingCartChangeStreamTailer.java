@@ -0,0 +1,368 @@
+package com.example.webshoppingservice.service;
+
+import com.example.webshoppingservice.model.CartEvent;
+import com.example.webshoppingservice.model.CartEventType;
+import com.example.webshoppingservice.model.ChangeStreamResumeToken;
+import com.example.webshoppingservice.model.Product;
+import com.example.webshoppingservice.model.ShoppingCart;
+import com.example.webshoppingservice.repository.ChangeStreamResumeTokenRepository;
+import com.example.webshoppingservice.repository.ShoppingCartRepositoryCustom;
+import com.mongodb.MongoException;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.FullDocumentBeforeChange;
+import com.mongodb.client.model.changestream.UpdateDescription;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonBinary;
+import org.bson.BsonBinarySubType;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.UuidRepresentation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.messaging.ChangeStreamRequest;
+import org.springframework.data.mongodb.core.messaging.DefaultMessageListenerContainer;
+import org.springframework.data.mongodb.core.messaging.MessageListenerContainer;
+import org.springframework.data.mongodb.core.messaging.Subscription;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tails the change stream of the shopping cart collection and publishes a {@link CartEvent} for each cart change to
+ * every {@link CartEventSink}. Request threads only write to Mongo; publishing happens on the tailer thread.
+ * <p>
+ * Every instance tails the stream for its own sinks and stores its resume token under
+ * {@link CartEventsConfig#getInstanceId()} every {@link CartEventsConfig#getCheckpointEvery()} changes or
+ * {@link CartEventsConfig#getCheckpointInterval()}, and on shutdown. Delivery is at-least-once: after a crash the
+ * stream resumes from the last stored token, so changes since then are published again. A failed stream is reopened
+ * with exponential backoff after the last handled change; if that change is no longer in the oplog, it is reopened at
+ * the current time and the changes in between are not published.
+ * <p>
+ * Telling added from removed products needs the pre-image of the change, and telling a user's delete from expiry by
+ * {@link ShoppingService#deleteOldCarts()} needs the {@link ShoppingCartRepositoryCustom#EXPIRED_AT} tag in it;
+ * pre-images are switched on for the collection at start (MongoDB 6.0+). Without one, updates are published as
+ * {@link CartEventType#UPDATED} and deletes as {@link CartEventType#DELETED} without products.
+ */
+@Component
+@Slf4j
+public class ShoppingCartChangeStreamTailer {
+
+    /**
+     * Change stream errors meaning the resume token is no longer in the oplog (ChangeStreamHistoryLost and, before
+     * MongoDB 4.4, ChangeStreamFatalError).
+     */
+    private static final Set<Integer> HISTORY_LOST_ERRORS = Set.of(286, 280);
+
+    private final MongoTemplate mongoTemplate;
+    private final ChangeStreamResumeTokenRepository resumeTokenRepository;
+    private final List<CartEventSink> sinks;
+    private final CartEventsConfig config;
+    private final Clock clock;
+    private final Map<CartEventType, Counter> publishedEvents = new EnumMap<>(CartEventType.class);
+    private final Counter sinkFailures;
+    private final Counter restarts;
+    private final ScheduledExecutorService restartScheduler;
+    private MessageListenerContainer container;
+    private Subscription subscription;
+    private String collection;
+    private boolean stopped;
+    private volatile BsonDocument resumeToken;
+    private Duration nextRestartBackoff;
+    private int changesSinceCheckpoint;
+    private long lastCheckpointAt;
+
+    @Autowired
+    public ShoppingCartChangeStreamTailer(final MongoTemplate mongoTemplate,
+                                          final ChangeStreamResumeTokenRepository resumeTokenRepository,
+                                          final List<CartEventSink> sinks,
+                                          final CartEventsConfig config,
+                                          final MeterRegistry meterRegistry) {
+        this(mongoTemplate, resumeTokenRepository, sinks, config, meterRegistry, Clock.systemUTC());
+    }
+
+    ShoppingCartChangeStreamTailer(final MongoTemplate mongoTemplate,
+                                   final ChangeStreamResumeTokenRepository resumeTokenRepository,
+                                   final List<CartEventSink> sinks,
+                                   final CartEventsConfig config,
+                                   final MeterRegistry meterRegistry,
+                                   final Clock clock) {
+        this.mongoTemplate = mongoTemplate;
+        this.resumeTokenRepository = resumeTokenRepository;
+        this.sinks = sinks;
+        this.config = config;
+        this.clock = clock;
+        this.nextRestartBackoff = config.getRestartBackoff();
+        this.lastCheckpointAt = clock.millis();
+        for (CartEventType type : CartEventType.values()) {
+            publishedEvents.put(type, Counter.builder("shopping.cart.events")
+                    .description("Cart events published from the change stream")
+                    .tag("type", type.name())
+                    .register(meterRegistry));
+        }
+        this.sinkFailures = Counter.builder("shopping.cart.events.sink-failures")
+                .description("Cart events a sink failed to accept")
+                .register(meterRegistry);
+        this.restarts = Counter.builder("shopping.cart.events.stream-restarts")
+                .description("Times the change stream was reopened after it failed")
+                .register(meterRegistry);
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("cart-change-stream-restart-");
+        threadFactory.setDaemon(true);
+        this.restartScheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("cart-change-stream-");
+        executor.setDaemon(true);
+        start(new DefaultMessageListenerContainer(mongoTemplate, executor));
+    }
+
+    void start(final MessageListenerContainer listenerContainer) {
+        collection = mongoTemplate.getCollectionName(ShoppingCart.class);
+        enablePreImages(collection);
+        resumeToken = resumeTokenRepository.findById(config.getInstanceId())
+                .map(storedToken -> BsonDocument.parse(storedToken.getToken()))
+                .orElse(null);
+
+        container = listenerContainer;
+        container.start();
+        subscribe();
+        log.info("Tailing change stream of {} as {}", collection, config.getInstanceId());
+    }
+
+    @PreDestroy
+    public void stop() {
+        synchronized (this) {
+            stopped = true;
+        }
+        restartScheduler.shutdownNow();
+        if (container != null) {
+            container.stop();
+        }
+        checkpoint();
+    }
+
+    void onChange(final ChangeStreamDocument<Document> change) {
+        for (CartEvent event : toEvents(change)) {
+            for (CartEventSink sink : sinks) {
+                try {
+                    sink.publish(event);
+                } catch (RuntimeException e) {
+                    sinkFailures.increment();
+                    log.warn("Cart event sink {} failed", sink.getClass().getSimpleName(), e);
+                }
+            }
+            publishedEvents.get(event.type()).increment();
+        }
+        if (change.getResumeToken() != null) {
+            advance(change.getResumeToken());
+        }
+    }
+
+    /**
+     * Reopens the stream after the last handled change once the backoff elapsed. Errors of a subscription that is
+     * still running come from a single change and only get logged.
+     */
+    synchronized void onStreamError(final Throwable error) {
+        if (stopped || (subscription != null && subscription.isActive())) {
+            log.warn("Shopping cart change stream listener failed", error);
+            return;
+        }
+        if (isHistoryLost(error)) {
+            log.warn("Resume token of {} is no longer in the oplog, tailing from now; changes in between are not published",
+                    config.getInstanceId(), error);
+            resumeToken = null;
+        } else {
+            log.warn("Shopping cart change stream failed, reopening in {}", nextRestartBackoff, error);
+        }
+        restartScheduler.schedule(this::restart, nextRestartBackoff.toMillis(), TimeUnit.MILLISECONDS);
+        Duration doubled = nextRestartBackoff.multipliedBy(2);
+        nextRestartBackoff = doubled.compareTo(config.getMaxRestartBackoff()) > 0 ? config.getMaxRestartBackoff() : doubled;
+    }
+
+    private synchronized void restart() {
+        if (stopped) {
+            return;
+        }
+        container.remove(subscription);
+        restarts.increment();
+        subscribe();
+    }
+
+    private synchronized void subscribe() {
+        ChangeStreamRequest.ChangeStreamRequestBuilder<Document> request = ChangeStreamRequest.<Document>builder(
+                        message -> onChange(message.getRaw()))
+                .collection(collection)
+                .fullDocumentLookup(FullDocument.UPDATE_LOOKUP)
+                .fullDocumentBeforeChangeLookup(FullDocumentBeforeChange.WHEN_AVAILABLE);
+        BsonDocument resumeAfter = resumeToken;
+        if (resumeAfter != null) {
+            request.resumeAfter(resumeAfter);
+        }
+        subscription = container.register(request.build(), Document.class, this::onStreamError);
+    }
+
+    private void advance(final BsonDocument token) {
+        boolean due;
+        synchronized (this) {
+            resumeToken = token;
+            nextRestartBackoff = config.getRestartBackoff();
+            changesSinceCheckpoint++;
+            due = changesSinceCheckpoint >= config.getCheckpointEvery()
+                    || clock.millis() - lastCheckpointAt >= config.getCheckpointInterval().toMillis();
+        }
+        if (due) {
+            checkpoint();
+        }
+    }
+
+    private void checkpoint() {
+        BsonDocument token;
+        synchronized (this) {
+            if (resumeToken == null || changesSinceCheckpoint == 0) {
+                return;
+            }
+            token = resumeToken;
+        }
+        try {
+            resumeTokenRepository.save(new ChangeStreamResumeToken(config.getInstanceId(), token.toJson(), clock.instant()));
+        } catch (DataAccessException e) {
+            log.warn("Could not store change stream resume token, retrying with the next change", e);
+            return;
+        }
+        synchronized (this) {
+            changesSinceCheckpoint = 0;
+            lastCheckpointAt = clock.millis();
+        }
+    }
+
+    List<CartEvent> toEvents(final ChangeStreamDocument<Document> change) {
+        Instant occurredAt = change.getClusterTime() == null
+                ? Instant.now()
+                : Instant.ofEpochSecond(change.getClusterTime().getTime());
+        ShoppingCart before = read(change.getFullDocumentBeforeChange());
+        ShoppingCart after = read(change.getFullDocument());
+        UUID cartId = cartId(change.getDocumentKey());
+
+        return switch (change.getOperationType()) {
+            case INSERT -> after == null
+                    ? List.of()
+                    : List.of(new CartEvent(CartEventType.CREATED, cartId, productIds(after), occurredAt));
+            case UPDATE, REPLACE -> {
+                if (after == null || isExpiryTag(change)) {
+                    // Deleted before the lookup; the delete has its own change.
+                    yield List.of();
+                }
+                if (before == null) {
+                    yield List.of(new CartEvent(CartEventType.UPDATED, cartId, productIds(after), occurredAt));
+                }
+                yield productChanges(cartId, productIds(before), productIds(after), occurredAt);
+            }
+            case DELETE -> before == null
+                    ? List.of(new CartEvent(CartEventType.DELETED, cartId, List.of(), occurredAt))
+                    : List.of(new CartEvent(
+                    change.getFullDocumentBeforeChange().containsKey(ShoppingCartRepositoryCustom.EXPIRED_AT)
+                            ? CartEventType.EXPIRED
+                            : CartEventType.DELETED,
+                    cartId, productIds(before), occurredAt));
+            default -> List.of();
+        };
+    }
+
+    private void enablePreImages(final String collection) {
+        try {
+            if (!mongoTemplate.collectionExists(collection)) {
+                mongoTemplate.createCollection(collection);
+            }
+            mongoTemplate.executeCommand(new Document("collMod", collection)
+                    .append("changeStreamPreAndPostImages", new Document("enabled", true)));
+        } catch (DataAccessException e) {
+            log.warn("Could not enable change stream pre-images on {}, cart updates are published without product changes", collection, e);
+        }
+    }
+
+    private ShoppingCart read(final Document document) {
+        return document == null ? null : mongoTemplate.getConverter().read(ShoppingCart.class, document);
+    }
+
+    private static List<CartEvent> productChanges(final UUID cartId,
+                                                  final List<UUID> before,
+                                                  final List<UUID> after,
+                                                  final Instant occurredAt) {
+        Set<UUID> beforeIds = new HashSet<>(before);
+        Set<UUID> afterIds = new HashSet<>(after);
+        List<UUID> added = after.stream().filter(id -> !beforeIds.contains(id)).toList();
+        List<UUID> removed = before.stream().filter(id -> !afterIds.contains(id)).toList();
+
+        List<CartEvent> events = new ArrayList<>(2);
+        if (!added.isEmpty()) {
+            events.add(new CartEvent(CartEventType.PRODUCTS_ADDED, cartId, added, occurredAt));
+        }
+        if (!removed.isEmpty()) {
+            events.add(new CartEvent(CartEventType.PRODUCTS_REMOVED, cartId, removed, occurredAt));
+        }
+        return events;
+    }
+
+    /**
+     * Whether the update only tagged the cart for expiry; the delete that follows it is published instead.
+     */
+    private static boolean isExpiryTag(final ChangeStreamDocument<Document> change) {
+        UpdateDescription update = change.getUpdateDescription();
+        return update != null
+                && update.getUpdatedFields() != null
+                && update.getUpdatedFields().keySet().equals(Set.of(ShoppingCartRepositoryCustom.EXPIRED_AT))
+                && (update.getRemovedFields() == null || update.getRemovedFields().isEmpty());
+    }
+
+    private static boolean isHistoryLost(final Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof MongoException mongoException && HISTORY_LOST_ERRORS.contains(mongoException.getCode())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<UUID> productIds(final ShoppingCart cart) {
+        return cart.getProducts() == null
+                ? List.of()
+                : cart.getProducts().stream().map(Product::getId).distinct().toList();
+    }
+
+    private static UUID cartId(final BsonDocument documentKey) {
+        BsonValue id = documentKey == null ? null : documentKey.get("_id");
+        if (id == null || !id.isBinary()) {
+            return null;
+        }
+        BsonBinary binary = id.asBinary();
+        return binary.getType() == BsonBinarySubType.UUID_LEGACY.getValue()
+                ? binary.asUuid(UuidRepresentation.JAVA_LEGACY)
+                : binary.asUuid();
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.webshoppingservice.service;
+
+import com.example.webshoppingservice.model.ShoppingCart;
+import com.example.webshoppingservice.repository.ShoppingCartRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Merges concurrent lookups of the same shopping cart into a single repository call.
+ * The first caller for a cart id performs the read, callers arriving while it is in flight
+ * wait for its result for at most {@link ShoppingCartReadConfig#getCoalescingMaxWait()}.
+ * All merged callers receive the same instance, so results must only be used for reads.
+ */
+@Component
+@Slf4j
+public class ShoppingCartReadCoalescer {
+
+    private final ShoppingCartRepository shoppingCartRepository;
+    private final ShoppingCartReadConfig config;
+    private final ShoppingMetrics shoppingMetrics;
+    private final Map<UUID, CompletableFuture<Optional<ShoppingCart>>> inFlightReads = new ConcurrentHashMap<>();
+    private final Counter repositoryReads;
+    private final Counter coalescedReads;
+    private final Counter timedOutWaits;
+
+    public ShoppingCartReadCoalescer(final ShoppingCartRepository shoppingCartRepository,
+                                     final ShoppingCartReadConfig config,
+                                     final ShoppingMetrics shoppingMetrics,
+                                     final MeterRegistry meterRegistry) {
+        this.shoppingCartRepository = shoppingCartRepository;
+        this.config = config;
+        this.shoppingMetrics = shoppingMetrics;
+        this.repositoryReads = Counter.builder("shopping.cart.reads")
+                .tag("result", "repository")
+                .description("Cart reads that went to the repository")
+                .register(meterRegistry);
+        this.coalescedReads = Counter.builder("shopping.cart.reads")
+                .tag("result", "coalesced")
+                .description("Cart reads served by an in-flight read of the same cart")
+                .register(meterRegistry);
+        this.timedOutWaits = Counter.builder("shopping.cart.reads")
+                .tag("result", "wait-timeout")
+                .description("Cart reads that stopped waiting for an in-flight read")
+                .register(meterRegistry);
+    }
+
+    public Optional<ShoppingCart> findShoppingCartById(final UUID id) {
+        CompletableFuture<Optional<ShoppingCart>> read = new CompletableFuture<>();
+        CompletableFuture<Optional<ShoppingCart>> inFlightRead = inFlightReads.putIfAbsent(id, read);
+        if (inFlightRead == null) {
+            return readFromRepository(id, read);
+        }
+
+        try {
+            Optional<ShoppingCart> shoppingCart = inFlightRead.get(config.getCoalescingMaxWait().toMillis(), TimeUnit.MILLISECONDS);
+            coalescedReads.increment();
+            return shoppingCart;
+        } catch (TimeoutException e) {
+            timedOutWaits.increment();
+            log.debug("Timed out waiting for in-flight read of shopping cart {}", id);
+            return readFromRepository(id);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Shopping cart read interrupted");
+        }
+    }
+
+    private Optional<ShoppingCart> readFromRepository(final UUID id, final CompletableFuture<Optional<ShoppingCart>> read) {
+        try {
+            Optional<ShoppingCart> shoppingCart = readFromRepository(id);
+            read.complete(shoppingCart);
+            return shoppingCart;
+        } catch (RuntimeException e) {
+            read.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlightReads.remove(id, read);
+        }
+    }
+
+    private Optional<ShoppingCart> readFromRepository(final UUID id) {
+        repositoryReads.increment();
+        return shoppingMetrics.recordRepositoryRead(id, () -> shoppingCartRepository.findShoppingCartById(id));
+    }
+}
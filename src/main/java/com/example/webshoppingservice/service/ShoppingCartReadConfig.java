@@ -0,0 +1,20 @@
+package com.example.webshoppingservice.service;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "shopping.cart.read")
+@Getter
+@Setter
+public class ShoppingCartReadConfig {
+
+    /**
+     * How long a caller waits for an in-flight read of the same cart before reading on its own.
+     */
+    private Duration coalescingMaxWait = Duration.ofSeconds(2);
+}
@@ -0,0 +1,174 @@
+package com.example.webshoppingservice.service;
+
+import com.example.webshoppingservice.client.CatalogRefreshListener;
+import com.example.webshoppingservice.model.Product;
+import com.example.webshoppingservice.repository.ShoppingCartRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Writes catalog price changes into stored carts. Each refreshed catalog is compared with the previous one and the
+ * changed prices are written in bulk, at most {@link ShoppingCartRepricingConfig#getMaxConcurrentWrites()} writes at
+ * a time. Only the newest catalog waiting to be compared is kept; since comparisons are against the last catalog
+ * processed, skipping the ones in between loses no change.
+ */
+@Component
+@Slf4j
+public class ShoppingCartRepricer implements CatalogRefreshListener {
+
+    private final ShoppingCartRepository shoppingCartRepository;
+    private final ShoppingCartRepricingConfig config;
+    private final ExecutorService diffExecutor;
+    private final ExecutorService writeExecutor;
+    private final AtomicReference<List<Product>> pendingCatalog = new AtomicReference<>();
+    private final AtomicInteger pendingBatches = new AtomicInteger();
+    private final Counter repricedProducts;
+    private final Counter repricedCarts;
+    private final Timer successfulBatches;
+    private final Timer failedBatches;
+    private Map<UUID, BigDecimal> previousPrices;
+
+    public ShoppingCartRepricer(final ShoppingCartRepository shoppingCartRepository,
+                                final ShoppingCartRepricingConfig config,
+                                final MeterRegistry meterRegistry) {
+        this.shoppingCartRepository = shoppingCartRepository;
+        this.config = config;
+        CustomizableThreadFactory diffThreadFactory = new CustomizableThreadFactory("cart-repricing-");
+        diffThreadFactory.setDaemon(true);
+        this.diffExecutor = Executors.newSingleThreadExecutor(diffThreadFactory);
+        CustomizableThreadFactory writeThreadFactory = new CustomizableThreadFactory("cart-repricing-write-");
+        writeThreadFactory.setDaemon(true);
+        this.writeExecutor = Executors.newFixedThreadPool(config.getMaxConcurrentWrites(), writeThreadFactory);
+        this.repricedProducts = Counter.builder("shopping.cart.repricing.products")
+                .description("Catalog price changes written to carts")
+                .register(meterRegistry);
+        this.repricedCarts = Counter.builder("shopping.cart.repricing.carts")
+                .description("Carts updated with new catalog prices")
+                .register(meterRegistry);
+        this.successfulBatches = batchTimer(meterRegistry, "success");
+        this.failedBatches = batchTimer(meterRegistry, "failure");
+        Gauge.builder("shopping.cart.repricing.pending-batches", pendingBatches, AtomicInteger::get)
+                .description("Repricing bulk writes queued or running")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void onCatalogRefresh(final List<Product> catalog) {
+        if (config.isEnabled() && pendingCatalog.getAndSet(catalog) == null) {
+            diffExecutor.execute(() -> {
+                List<Product> latest = pendingCatalog.getAndSet(null);
+                if (latest != null) {
+                    reprice(latest);
+                }
+            });
+        }
+    }
+
+    /**
+     * Writes the prices that changed since the last catalog and waits for the writes. The first catalog only sets
+     * the baseline. Prices of failed batches are retried with the next catalog.
+     */
+    void reprice(final List<Product> catalog) {
+        Map<UUID, BigDecimal> prices = new HashMap<>(catalog.size() * 2);
+        for (Product product : catalog) {
+            if (product.getId() != null && product.getPrice() != null) {
+                prices.put(product.getId(), product.getPrice());
+            }
+        }
+        Map<UUID, BigDecimal> baseline = previousPrices;
+        previousPrices = prices;
+        if (baseline == null) {
+            return;
+        }
+
+        Map<UUID, BigDecimal> changedPrices = new LinkedHashMap<>();
+        prices.forEach((productId, price) -> {
+            BigDecimal previousPrice = baseline.get(productId);
+            if (previousPrice != null && previousPrice.compareTo(price) != 0) {
+                changedPrices.put(productId, price);
+            }
+        });
+        if (changedPrices.isEmpty()) {
+            return;
+        }
+
+        Queue<UUID> failedProductIds = new ConcurrentLinkedQueue<>();
+        List<CompletableFuture<Void>> writes = new ArrayList<>();
+        for (Map<UUID, BigDecimal> batch : batches(changedPrices)) {
+            pendingBatches.incrementAndGet();
+            writes.add(CompletableFuture.runAsync(() -> write(batch, failedProductIds), writeExecutor));
+        }
+        CompletableFuture.allOf(writes.toArray(CompletableFuture[]::new)).join();
+
+        for (UUID productId : failedProductIds) {
+            prices.put(productId, baseline.get(productId));
+        }
+        log.info("Repriced {} products in carts, {} failed", changedPrices.size() - failedProductIds.size(), failedProductIds.size());
+    }
+
+    private void write(final Map<UUID, BigDecimal> batch, final Queue<UUID> failedProductIds) {
+        long start = System.nanoTime();
+        try {
+            repricedCarts.increment(shoppingCartRepository.repriceProducts(batch));
+            repricedProducts.increment(batch.size());
+            successfulBatches.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        } catch (RuntimeException e) {
+            log.warn("Could not reprice {} products in carts", batch.size(), e);
+            failedProductIds.addAll(batch.keySet());
+            failedBatches.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        } finally {
+            pendingBatches.decrementAndGet();
+        }
+    }
+
+    private List<Map<UUID, BigDecimal>> batches(final Map<UUID, BigDecimal> changedPrices) {
+        List<Map<UUID, BigDecimal>> batches = new ArrayList<>();
+        Map<UUID, BigDecimal> batch = new LinkedHashMap<>();
+        for (Map.Entry<UUID, BigDecimal> change : changedPrices.entrySet()) {
+            batch.put(change.getKey(), change.getValue());
+            if (batch.size() == config.getBatchSize()) {
+                batches.add(batch);
+                batch = new LinkedHashMap<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    private static Timer batchTimer(final MeterRegistry meterRegistry, final String result) {
+        return Timer.builder("shopping.cart.repricing.batch")
+                .description("Time spent writing one batch of new prices to carts")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        diffExecutor.shutdownNow();
+        writeExecutor.shutdownNow();
+    }
+}
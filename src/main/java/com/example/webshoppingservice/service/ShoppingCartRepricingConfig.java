@@ -0,0 +1,25 @@
+package com.example.webshoppingservice.service;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "shopping.cart.repricing")
+@Getter
+@Setter
+public class ShoppingCartRepricingConfig {
+
+    private boolean enabled = true;
+
+    /**
+     * Number of changed products updated by one bulk write.
+     */
+    private int batchSize = 500;
+
+    /**
+     * Maximum number of bulk writes running at the same time.
+     */
+    private int maxConcurrentWrites = 2;
+}
@@ -0,0 +1,80 @@
+package com.example.webshoppingservice.service;
+
+import com.example.webshoppingservice.model.ShoppingCart;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jdk.jfr.EventType;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Hot-path timers and size distributions of {@link ShoppingService}. Catalog fetch and product match timers
+ * live in the client package, endpoint latencies in {@code http.server.requests}. Repository calls are also
+ * emitted as {@link CartRepositoryEvent}s while a JFR recording is running; otherwise no event is created.
+ */
+@Component
+public class ShoppingMetrics {
+
+    private static final EventType CART_REPOSITORY_EVENT = EventType.getEventType(CartRepositoryEvent.class);
+
+    private final Timer repositoryReadTimer;
+    private final Timer repositoryWriteTimer;
+    private final DistributionSummary cartSize;
+
+    public ShoppingMetrics(final MeterRegistry meterRegistry) {
+        this.repositoryReadTimer = Timer.builder("shopping.cart.repository")
+                .tag("operation", "read")
+                .description("Time spent reading shopping carts from Mongo")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.repositoryWriteTimer = Timer.builder("shopping.cart.repository")
+                .tag("operation", "write")
+                .description("Time spent writing shopping carts to Mongo")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.cartSize = DistributionSummary.builder("shopping.cart.size")
+                .baseUnit("products")
+                .description("Number of products in saved shopping carts")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    public <T> T recordRepositoryRead(final UUID cartId, final Supplier<T> read) {
+        return record(repositoryReadTimer, "read", cartId, read);
+    }
+
+    public <T> T recordRepositoryWrite(final UUID cartId, final Supplier<T> write) {
+        return record(repositoryWriteTimer, "write", cartId, write);
+    }
+
+    public void recordRepositoryWrite(final UUID cartId, final Runnable write) {
+        record(repositoryWriteTimer, "write", cartId, () -> {
+            write.run();
+            return null;
+        });
+    }
+
+    public void recordCartSize(final ShoppingCart shoppingCart) {
+        cartSize.record(shoppingCart.getProducts() == null ? 0 : shoppingCart.getProducts().size());
+    }
+
+    private static <T> T record(final Timer timer, final String operation, final UUID cartId, final Supplier<T> call) {
+        if (!CART_REPOSITORY_EVENT.isEnabled()) {
+            return timer.record(call);
+        }
+        CartRepositoryEvent event = new CartRepositoryEvent();
+        event.begin();
+        try {
+            return timer.record(call);
+        } finally {
+            if (event.shouldCommit()) {
+                event.operation = operation;
+                event.cartId = cartId == null ? null : cartId.toString();
+                event.commit();
+            }
+        }
+    }
+}
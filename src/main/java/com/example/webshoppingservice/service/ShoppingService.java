@@ -1,20 +1,30 @@
 package com.example.webshoppingservice.service;
 
-import com.example.webshoppingservice.client.ProductClient;
+import com.example.webshoppingservice.client.KnownProductIds;
+import com.example.webshoppingservice.client.ProductResolver;
 import com.example.webshoppingservice.model.Product;
 import com.example.webshoppingservice.model.ShoppingCart;
+import com.example.webshoppingservice.model.ShoppingCartPage;
 import com.example.webshoppingservice.model.ShoppingCartRequestBody;
 import com.example.webshoppingservice.repository.ShoppingCartRepository;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections4.CollectionUtils;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Stream;
 
@@ -22,53 +32,81 @@ import java.util.stream.Stream;
 @AllArgsConstructor
 @Slf4j
 public class ShoppingService {
+    /**
+     * Age after which {@link #deleteOldCarts()} removes a cart.
+     */
+    public static final Duration CART_TIME_TO_LIVE = Duration.ofMinutes(1);
+    /**
+     * Largest number of products returned by {@link #retrieveShoppingCartPage}.
+     */
+    public static final int MAX_PAGE_SIZE = 1000;
+
     private final ShoppingCartRepository shoppingCartRepository;
-    private final ProductClient productClient;
+    private final ProductResolver productResolver;
+    private final KnownProductIds knownProductIds;
+    private final ShoppingCartReadCoalescer shoppingCartReadCoalescer;
+    private final ShoppingMetrics shoppingMetrics;
+    private final PopularProducts popularProducts;
+    private final CartEventsConfig cartEventsConfig;
 
     public ShoppingCart retrieveShoppingCart(final UUID id) {
-        return shoppingCartRepository.findShoppingCartById(id)
+        return shoppingCartReadCoalescer.findShoppingCartById(id)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Shopping cart not found"));
     }
 
+    public ShoppingCartPage retrieveShoppingCartPage(final UUID id, final int offset, final Integer limit, final List<String> fields) {
+        if (offset < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Offset must not be negative");
+        }
+        if (limit != null && (limit < 1 || limit > MAX_PAGE_SIZE)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        try {
+            return shoppingMetrics.recordRepositoryRead(id, () -> shoppingCartRepository.findShoppingCartPage(id, offset, limit, fields))
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Shopping cart not found"));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
     public ShoppingCart createShoppingCart(final ShoppingCartRequestBody requestBody) {
-        List<Product> products = productClient.getAllProducts();
-        List<Product> filteredProducts = products.stream()
-                .filter(product -> requestBody.products().contains(product.getId()))
-                .toList();
+        return createShoppingCart(requestBody, UUID.randomUUID());
+    }
+
+    public ShoppingCart createShoppingCart(final ShoppingCartRequestBody requestBody, final UUID cartId) {
+        List<Product> filteredProducts = resolveProducts(requestBody.products());
 
         if (filteredProducts.isEmpty()) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No available products found");
         }
 
-        ShoppingCart shoppingCart = new ShoppingCart(UUID.randomUUID(), filteredProducts, LocalDateTime.now());
-        return shoppingCartRepository.save(shoppingCart);
+        ShoppingCart shoppingCart = new ShoppingCart(cartId, filteredProducts, LocalDateTime.now());
+        ShoppingCart savedCart = saveShoppingCart(shoppingCart);
+        recordProductChanges(List.of(), filteredProducts);
+        return savedCart;
     }
 
-    public ShoppingCart editShoppingCart(final UUID cartId, final ShoppingCartRequestBody requestBody) {
-        List<Product> products = productClient.getAllProducts();
-        List<Product> filteredProducts = products.stream()
-                .filter(product -> requestBody.products().contains(product.getId()))
-                .toList();
+    public ShoppingCart editShoppingCart(final UUID cartId, final ShoppingCartRequestBody requestBody, final Long expectedVersion) {
+        ShoppingCart shoppingCart = findShoppingCart(cartId, expectedVersion);
+
+        List<Product> filteredProducts = resolveProducts(requestBody.products());
 
         if (filteredProducts.isEmpty()) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No products found");
         }
 
-        ShoppingCart shoppingCart = shoppingCartRepository.findShoppingCartById(cartId)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Shopping cart not found"));
-
+        List<Product> previousProducts = shoppingCart.getProducts();
         shoppingCart.setProducts(filteredProducts);
-        return shoppingCartRepository.save(shoppingCart);
+        ShoppingCart savedCart = saveShoppingCart(shoppingCart, expectedVersion);
+        recordProductChanges(previousProducts, filteredProducts);
+        return savedCart;
     }
 
-    public ShoppingCart addProductsToShoppingCart(final UUID cartId, final List<UUID> productIds) {
-        ShoppingCart shoppingCart = shoppingCartRepository.findShoppingCartById(cartId)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Shopping cart not found"));
+    public ShoppingCart addProductsToShoppingCart(final UUID cartId, final List<UUID> productIds, final Long expectedVersion) {
+        ShoppingCart shoppingCart = findShoppingCart(cartId, expectedVersion);
+        List<Product> previousProducts = shoppingCart.getProducts();
 
-        List<Product> products = productClient.getAllProducts();
-        List<Product> newProducts = products.stream()
-                .filter(product -> productIds.contains(product.getId()))
-                .toList();
+        List<Product> newProducts = resolveProducts(productIds);
 
         if (CollectionUtils.isNotEmpty(newProducts)) {
             List<Product> combinedProducts = Stream.concat(shoppingCart.getProducts().stream(), newProducts.stream())
@@ -78,33 +116,124 @@ public class ShoppingService {
         } else {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No products found");
         }
-        return shoppingCartRepository.save(shoppingCart);
+        ShoppingCart savedCart = saveShoppingCart(shoppingCart, expectedVersion);
+        recordProductChanges(previousProducts, shoppingCart.getProducts());
+        return savedCart;
     }
 
-    public ShoppingCart removeProductsFromShoppingCart(final UUID cartId, final List<UUID> productIds) {
-        ShoppingCart shoppingCart = shoppingCartRepository.findShoppingCartById(cartId)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Shopping cart not found"));
+    public ShoppingCart removeProductsFromShoppingCart(final UUID cartId, final List<UUID> productIds, final Long expectedVersion) {
+        ShoppingCart shoppingCart = findShoppingCart(cartId, expectedVersion);
+        List<Product> previousProducts = shoppingCart.getProducts();
 
         if (CollectionUtils.isNotEmpty(productIds)) {
+            Set<UUID> removedIds = new HashSet<>(productIds);
             shoppingCart.setProducts(shoppingCart.getProducts().stream()
-                    .filter(product -> !productIds.contains(product.getId()))
+                    .filter(product -> !removedIds.contains(product.getId()))
                     .toList());
         }
 
-        return shoppingCartRepository.save(shoppingCart);
+        ShoppingCart savedCart = saveShoppingCart(shoppingCart, expectedVersion);
+        recordProductChanges(previousProducts, shoppingCart.getProducts());
+        return savedCart;
     }
 
-    public void deleteShoppingCart(final UUID id) {
-        ShoppingCart shoppingCart = shoppingCartRepository.findShoppingCartById(id)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Shopping cart not found"));
+    public ShoppingCart mergeShoppingCarts(final UUID targetId, final UUID sourceId, final Long expectedVersion) {
+        if (targetId.equals(sourceId)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Cannot merge a shopping cart into itself");
+        }
 
-        shoppingCartRepository.delete(shoppingCart);
+        Optional<ShoppingCart> merged;
+        try {
+            merged = shoppingMetrics.recordRepositoryWrite(targetId,
+                    () -> shoppingCartRepository.mergeShoppingCarts(targetId, sourceId, expectedVersion));
+        } catch (OptimisticLockingFailureException e) {
+            throw concurrentModification(expectedVersion);
+        }
+        ShoppingCart mergedCart = merged.orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Shopping cart not found"));
+        shoppingMetrics.recordCartSize(mergedCart);
+        return mergedCart;
+    }
+
+    public void deleteShoppingCart(final UUID id, final Long expectedVersion) {
+        ShoppingCart shoppingCart = findShoppingCart(id, expectedVersion);
+
+        try {
+            shoppingMetrics.recordRepositoryWrite(id, () -> shoppingCartRepository.delete(shoppingCart));
+        } catch (OptimisticLockingFailureException e) {
+            throw concurrentModification(expectedVersion);
+        }
+        recordProductChanges(shoppingCart.getProducts(), List.of());
     }
 
     public void deleteOldCarts() {
-        LocalDateTime oneMinuteAgo = LocalDateTime.now(ZoneId.systemDefault()).minusMinutes(1);
-        shoppingCartRepository.deleteShoppingCartsByInsertDateTimeIsBefore(oneMinuteAgo);
+        CartCleanupEvent event = new CartCleanupEvent();
+        event.begin();
+        ZonedDateTime expiredBefore = ZonedDateTime.now(ZoneId.systemDefault()).minus(CART_TIME_TO_LIVE);
+        // Only the change stream tells expiry from a user's delete by the tag, so without it carts are not tagged.
+        long deletedCarts = shoppingMetrics.recordRepositoryWrite(null, () -> shoppingCartRepository.expireShoppingCarts(
+                expiredBefore.toLocalDateTime(), cartEventsConfig.isEnabled()));
+        event.expiredBefore = expiredBefore.toInstant().toEpochMilli();
+        event.deletedCarts = deletedCarts;
+        event.commit();
         log.info("Old shopping carts removed.");
 
     }
+
+    /**
+     * Reads the cart and checks it still has {@code expectedVersion} (any version when null) before the caller does
+     * catalog work for it.
+     */
+    private ShoppingCart findShoppingCart(final UUID cartId, final Long expectedVersion) {
+        ShoppingCart shoppingCart = shoppingMetrics.recordRepositoryRead(cartId, () -> shoppingCartRepository.findShoppingCartById(cartId))
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Shopping cart not found"));
+        if (expectedVersion != null && !Objects.equals(expectedVersion, shoppingCart.getVersion())) {
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "Shopping cart version mismatch");
+        }
+        return shoppingCart;
+    }
+
+    /**
+     * A cart changed between read and write fails the request's {@code If-Match} when one was sent.
+     */
+    private static ResponseStatusException concurrentModification(final Long expectedVersion) {
+        if (expectedVersion != null) {
+            return new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "Shopping cart version mismatch");
+        }
+        return new ResponseStatusException(HttpStatus.CONFLICT, "Shopping cart was modified concurrently");
+    }
+
+    private List<Product> resolveProducts(final Collection<UUID> productIds) {
+        if (knownProductIds.isDefinitelyUnknown(productIds)) {
+            return List.of();
+        }
+        return productResolver.resolveProducts(productIds);
+    }
+
+    private static List<UUID> productIds(final List<Product> products) {
+        return products.stream().map(Product::getId).toList();
+    }
+
+    /**
+     * Counts products a user put into or took out of a cart, deleting the cart included, once per product id.
+     * Merges only move products between carts and expiry is no user's choice, so neither is counted.
+     */
+    private void recordProductChanges(final List<Product> before, final List<Product> after) {
+        Set<UUID> beforeIds = new HashSet<>(productIds(before == null ? List.of() : before));
+        Set<UUID> afterIds = new HashSet<>(productIds(after));
+        popularProducts.recordAdded(afterIds.stream().filter(id -> !beforeIds.contains(id)).toList());
+        popularProducts.recordRemoved(beforeIds.stream().filter(id -> !afterIds.contains(id)).toList());
+    }
+
+    private ShoppingCart saveShoppingCart(final ShoppingCart shoppingCart) {
+        return saveShoppingCart(shoppingCart, null);
+    }
+
+    private ShoppingCart saveShoppingCart(final ShoppingCart shoppingCart, final Long expectedVersion) {
+        shoppingMetrics.recordCartSize(shoppingCart);
+        try {
+            return shoppingMetrics.recordRepositoryWrite(shoppingCart.getId(), () -> shoppingCartRepository.save(shoppingCart));
+        } catch (OptimisticLockingFailureException e) {
+            throw concurrentModification(expectedVersion);
+        }
+    }
 }
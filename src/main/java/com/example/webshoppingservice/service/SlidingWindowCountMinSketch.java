@@ -0,0 +1,117 @@
+package com.example.webshoppingservice.service;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Count-Min sketch over a sliding time window. The window is split into buckets, each with its own
+ * {@code depth x width} counters; a bucket is cleared when time wraps around to it. Updates touch {@code depth}
+ * counters and estimates read {@code depth x buckets}, without locks; only an update that meets its bucket being
+ * cleared, once per bucket period, spins until the clearing is done.
+ * <p>
+ * Estimates exceed the true count within the window by at most {@code e / width} of the window's total, with
+ * probability {@code 1 - e^-depth}. A removal whose add already left the window can pull an estimate down, so
+ * estimates are clamped at zero.
+ */
+final class SlidingWindowCountMinSketch {
+
+    private static final long NO_EPOCH = -1;
+    private static final long CLEARING = -2;
+
+    private final int depth;
+    private final int width;
+    private final int buckets;
+    private final long bucketMillis;
+    private final AtomicLongArray counters;
+    private final AtomicLongArray bucketEpochs;
+
+    SlidingWindowCountMinSketch(final int depth, final int width, final int buckets, final Duration window) {
+        if (depth < 1 || width < 1 || buckets < 1 || window.toMillis() < buckets) {
+            throw new IllegalArgumentException("Invalid sketch dimensions");
+        }
+        this.depth = depth;
+        this.width = width == 1 ? 1 : Integer.highestOneBit(width - 1) << 1;
+        this.buckets = buckets;
+        this.bucketMillis = window.toMillis() / buckets;
+        this.counters = new AtomicLongArray(buckets * depth * this.width);
+        this.bucketEpochs = new AtomicLongArray(buckets);
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            bucketEpochs.set(bucket, NO_EPOCH);
+        }
+    }
+
+    void add(final UUID id, final long delta, final long nowMillis) {
+        long epoch = nowMillis / bucketMillis;
+        int bucket = (int) Math.floorMod(epoch, (long) buckets);
+        rotate(bucket, epoch);
+
+        long firstHash = firstHash(id);
+        long secondHash = secondHash(id);
+        int offset = bucket * depth * width;
+        for (int row = 0; row < depth; row++) {
+            counters.addAndGet(offset + row * width + column(firstHash, secondHash, row), delta);
+        }
+    }
+
+    long estimate(final UUID id, final long nowMillis) {
+        long epoch = nowMillis / bucketMillis;
+        long firstHash = firstHash(id);
+        long secondHash = secondHash(id);
+
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int column = column(firstHash, secondHash, row);
+            long sum = 0;
+            for (int bucket = 0; bucket < buckets; bucket++) {
+                long bucketEpoch = bucketEpochs.get(bucket);
+                if (bucketEpoch >= 0 && bucketEpoch <= epoch && epoch - bucketEpoch < buckets) {
+                    sum += counters.get(bucket * depth * width + row * width + column);
+                }
+            }
+            estimate = Math.min(estimate, sum);
+        }
+        return Math.max(0, estimate);
+    }
+
+    int width() {
+        return width;
+    }
+
+    private void rotate(final int bucket, final long epoch) {
+        while (true) {
+            long bucketEpoch = bucketEpochs.get(bucket);
+            if (bucketEpoch == CLEARING) {
+                Thread.onSpinWait();
+            } else if (bucketEpoch >= epoch) {
+                return;
+            } else if (bucketEpochs.compareAndSet(bucket, bucketEpoch, CLEARING)) {
+                int offset = bucket * depth * width;
+                for (int i = 0; i < depth * width; i++) {
+                    counters.set(offset + i, 0);
+                }
+                bucketEpochs.set(bucket, epoch);
+                return;
+            }
+        }
+    }
+
+    private int column(final long firstHash, final long secondHash, final int row) {
+        return (int) ((firstHash + row * secondHash) & (width - 1));
+    }
+
+    private static long firstHash(final UUID id) {
+        return mix(id.getMostSignificantBits() ^ id.getLeastSignificantBits());
+    }
+
+    private static long secondHash(final UUID id) {
+        return mix(id.getLeastSignificantBits() + 0x9E3779B97F4A7C15L * id.getMostSignificantBits()) | 1;
+    }
+
+    private static long mix(final long value) {
+        long z = value;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
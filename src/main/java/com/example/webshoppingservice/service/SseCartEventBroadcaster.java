@@ -0,0 +1,84 @@
+package com.example.webshoppingservice.service;
+
+import com.example.webshoppingservice.model.CartEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends cart events to server-sent-event subscribers from its own thread, so a slow subscriber delays neither the
+ * change-stream tailer nor other sinks. Events that do not fit in the queue are dropped and counted.
+ */
+@Component
+@Slf4j
+public class SseCartEventBroadcaster implements CartEventSink {
+
+    private final CartEventsConfig config;
+    private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+    private final ThreadPoolExecutor executor;
+    private final Counter droppedEvents;
+
+    public SseCartEventBroadcaster(final CartEventsConfig config, final MeterRegistry meterRegistry) {
+        this.config = config;
+        this.droppedEvents = Counter.builder("shopping.cart.events.dropped")
+                .description("Cart events not sent to subscribers because the send queue was full")
+                .register(meterRegistry);
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("cart-events-sse-");
+        threadFactory.setDaemon(true);
+        this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(config.getSubscriberQueueCapacity()), threadFactory,
+                (task, pool) -> droppedEvents.increment());
+        Gauge.builder("shopping.cart.events.subscribers", emitters, List::size)
+                .description("Open server-sent-event subscriptions to cart events")
+                .register(meterRegistry);
+    }
+
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(config.getSubscriberTimeout().toMillis());
+        emitter.onCompletion(() -> emitters.remove(emitter));
+        emitter.onTimeout(() -> emitters.remove(emitter));
+        emitter.onError(e -> emitters.remove(emitter));
+        emitters.add(emitter);
+        return emitter;
+    }
+
+    @Override
+    public void publish(final CartEvent event) {
+        if (!emitters.isEmpty()) {
+            executor.execute(() -> send(event));
+        }
+    }
+
+    private void send(final CartEvent event) {
+        for (SseEmitter emitter : emitters) {
+            try {
+                emitter.send(SseEmitter.event()
+                        .name(event.type().name())
+                        .data(event, MediaType.APPLICATION_JSON));
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Dropping cart event subscriber", e);
+                emitters.remove(emitter);
+                emitter.completeWithError(e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        emitters.forEach(SseEmitter::complete);
+    }
+}
@@ -3,7 +3,7 @@ package com.example.webshoppingservice;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(properties = "shopping.mongo.ensure-indexes=false")
 class ShoppingServiceApplicationTests {
 
     @Test
@@ -0,0 +1,79 @@
+package com.example.webshoppingservice.api;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptiveConcurrencyLimitTest {
+
+    private static final long TARGET = TimeUnit.MILLISECONDS.toNanos(100);
+
+    @Test
+    void should_reject_beyond_limit() {
+        AdaptiveConcurrencyLimit concurrencyLimit = new AdaptiveConcurrencyLimit(2, 1, 10, TARGET, 0.5);
+
+        assertThat(concurrencyLimit.tryAcquire()).isTrue();
+        assertThat(concurrencyLimit.tryAcquire()).isTrue();
+        assertThat(concurrencyLimit.tryAcquire()).isFalse();
+        assertThat(concurrencyLimit.inFlight()).isEqualTo(2);
+
+        concurrencyLimit.release(0, TARGET / 2, false);
+        assertThat(concurrencyLimit.tryAcquire()).isTrue();
+    }
+
+    @Test
+    void should_back_off_on_slow_or_failed_writes() {
+        AdaptiveConcurrencyLimit concurrencyLimit = new AdaptiveConcurrencyLimit(16, 2, 32, TARGET, 0.5);
+
+        concurrencyLimit.tryAcquire();
+        concurrencyLimit.release(0, TARGET * 2, false);
+        assertThat(concurrencyLimit.limit()).isEqualTo(8);
+
+        concurrencyLimit.tryAcquire();
+        concurrencyLimit.release(TARGET * 2, TARGET * 5 / 2, true);
+        assertThat(concurrencyLimit.limit()).isEqualTo(4);
+
+        for (int i = 0; i < 10; i++) {
+            concurrencyLimit.tryAcquire();
+            concurrencyLimit.release(TARGET * 3 * (i + 1), TARGET * 3 * (i + 1) + TARGET * 2, false);
+        }
+        assertThat(concurrencyLimit.limit()).isEqualTo(2);
+    }
+
+    @Test
+    void should_back_off_once_for_slow_writes_that_ran_together() {
+        AdaptiveConcurrencyLimit concurrencyLimit = new AdaptiveConcurrencyLimit(16, 2, 32, TARGET, 0.5);
+
+        for (int i = 0; i < 8; i++) {
+            concurrencyLimit.tryAcquire();
+        }
+        for (int i = 0; i < 8; i++) {
+            concurrencyLimit.release(0, TARGET * 2 + i, false);
+        }
+        assertThat(concurrencyLimit.limit()).isEqualTo(8);
+
+        concurrencyLimit.tryAcquire();
+        concurrencyLimit.release(TARGET * 3, TARGET * 5, false);
+        assertThat(concurrencyLimit.limit()).isEqualTo(4);
+    }
+
+    @Test
+    void should_grow_only_while_limit_is_used() {
+        AdaptiveConcurrencyLimit concurrencyLimit = new AdaptiveConcurrencyLimit(4, 1, 32, TARGET, 0.5);
+
+        for (int i = 0; i < 100; i++) {
+            concurrencyLimit.tryAcquire();
+            concurrencyLimit.release(0, TARGET / 2, false);
+        }
+        assertThat(concurrencyLimit.limit()).isEqualTo(4);
+
+        for (int i = 0; i < 100; i++) {
+            while (concurrencyLimit.inFlight() < concurrencyLimit.limit() && concurrencyLimit.tryAcquire()) {
+            }
+            concurrencyLimit.release(0, TARGET / 2, false);
+        }
+        assertThat(concurrencyLimit.limit()).isGreaterThan(4);
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.webshoppingservice.api;
+
+import com.example.webshoppingservice.model.ShoppingCart;
+import com.example.webshoppingservice.service.IdempotentShoppingCartCreator;
+import com.example.webshoppingservice.service.ShoppingService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.method.HandlerMethod;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class CartWriteAdmissionInterceptorTest {
+
+    private static final ShoppingCart SHOPPING_CART = new ShoppingCart(UUID.randomUUID(), List.of(), null, 1L);
+    private static final String CLIENT_A = "203.0.113.10";
+    private static final String CLIENT_B = "203.0.113.11";
+    private static final String PROXY = "10.0.0.2";
+    private static final String BODY = "{\"products\":[\"" + UUID.randomUUID() + "\"]}";
+
+    @Mock
+    private ShoppingService shoppingService;
+    private MeterRegistry meterRegistry;
+    private CartWriteAdmissionConfig config;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        config = new CartWriteAdmissionConfig();
+        config.setBurst(2);
+        config.setRefillPerSecond(1);
+        when(shoppingService.createShoppingCart(any())).thenReturn(SHOPPING_CART);
+        when(shoppingService.retrieveShoppingCart(any())).thenReturn(SHOPPING_CART);
+    }
+
+    @Test
+    void should_reject_client_over_its_rate_with_retry_after() throws Exception {
+        MockMvc mockMvc = mockMvc();
+
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(createCart(CLIENT_A, "client-a")).andExpect(status().isOk());
+        }
+        mockMvc.perform(createCart(CLIENT_A, "client-a"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"));
+        mockMvc.perform(createCart(CLIENT_B, "client-a")).andExpect(status().isOk());
+
+        assertThat(meterRegistry.get("shopping.cart.admission").tag("result", "admitted").counter().count()).isEqualTo(3);
+        assertThat(meterRegistry.get("shopping.cart.admission").tag("result", "rate-limited").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void should_refill_bucket_as_ticker_advances_from_any_origin() throws Exception {
+        AtomicLong ticker = new AtomicLong(-TimeUnit.DAYS.toNanos(365));
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new ShoppingController(shoppingService, mock(IdempotentShoppingCartCreator.class)))
+                .addInterceptors(new CartWriteAdmissionInterceptor(config, meterRegistry, ticker::get))
+                .build();
+
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(createCart(CLIENT_A, "client-a")).andExpect(status().isOk());
+        }
+        mockMvc.perform(createCart(CLIENT_A, "client-a")).andExpect(status().isTooManyRequests());
+        ticker.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        mockMvc.perform(createCart(CLIENT_A, "client-a")).andExpect(status().isOk());
+    }
+
+    @Test
+    void should_ignore_client_id_header_from_untrusted_address() throws Exception {
+        MockMvc mockMvc = mockMvc();
+
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(createCart(CLIENT_A, "client-" + i)).andExpect(status().isOk());
+        }
+        mockMvc.perform(createCart(CLIENT_A, "client-2")).andExpect(status().isTooManyRequests());
+    }
+
+    @Test
+    void should_key_on_client_id_header_behind_trusted_proxy() throws Exception {
+        config.setTrustedProxies(List.of(PROXY));
+        MockMvc mockMvc = mockMvc();
+
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(createCart(PROXY, "client-a")).andExpect(status().isOk());
+        }
+        mockMvc.perform(createCart(PROXY, "client-a")).andExpect(status().isTooManyRequests());
+        mockMvc.perform(createCart(PROXY, "client-b")).andExpect(status().isOk());
+    }
+
+    @Test
+    void should_not_limit_reads() throws Exception {
+        MockMvc mockMvc = mockMvc();
+
+        for (int i = 0; i < 5; i++) {
+            mockMvc.perform(get("/shopping/cart/{cartId}", UUID.randomUUID()).with(remoteAddress(CLIENT_A)))
+                    .andExpect(status().isOk());
+        }
+    }
+
+    @Test
+    void should_shed_writes_over_concurrency_limit() throws Exception {
+        config.setBurst(100);
+        config.setInitialConcurrencyLimit(1);
+        config.setMinConcurrencyLimit(1);
+        CartWriteAdmissionInterceptor interceptor = new CartWriteAdmissionInterceptor(config, meterRegistry, () -> 0L);
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new ShoppingController(shoppingService, mock(IdempotentShoppingCartCreator.class)))
+                .addInterceptors(interceptor)
+                .build();
+        // One write admitted and still running.
+        MockHttpServletRequest inFlightWrite = new MockHttpServletRequest("POST", "/shopping/cart");
+        interceptor.preHandle(inFlightWrite, new MockHttpServletResponse(),
+                new HandlerMethod(new ShoppingController(shoppingService, mock(IdempotentShoppingCartCreator.class)),
+                        ShoppingController.class.getMethod("deleteShoppingCart", UUID.class, String.class)));
+
+        mockMvc.perform(createCart(CLIENT_A, "client-a"))
+                .andExpect(status().isTooManyRequests());
+
+        assertThat(meterRegistry.get("shopping.cart.admission").tag("result", "concurrency-limited").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void should_admit_everything_when_disabled() throws Exception {
+        config.setEnabled(false);
+        MockMvc mockMvc = mockMvc();
+
+        for (int i = 0; i < 5; i++) {
+            mockMvc.perform(createCart(CLIENT_A, "client-a")).andExpect(status().isOk());
+        }
+    }
+
+    private MockMvc mockMvc() {
+        return MockMvcBuilders.standaloneSetup(new ShoppingController(shoppingService, mock(IdempotentShoppingCartCreator.class)))
+                .addInterceptors(new CartWriteAdmissionInterceptor(config, meterRegistry, () -> 0L))
+                .build();
+    }
+
+    private static RequestBuilder createCart(final String remoteAddress, final String clientId) {
+        return post("/shopping/cart")
+                .with(remoteAddress(remoteAddress))
+                .header("X-Client-Id", clientId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(BODY);
+    }
+
+    private static RequestPostProcessor remoteAddress(final String remoteAddress) {
+        return request -> {
+            request.setRemoteAddr(remoteAddress);
+            return request;
+        };
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.webshoppingservice.api;
+
+import com.example.webshoppingservice.model.PopularProduct;
+import com.example.webshoppingservice.service.PopularProducts;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class PopularProductsControllerTest {
+
+    @Mock
+    private PopularProducts popularProducts;
+
+    @InjectMocks
+    private PopularProductsController popularProductsController;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        mockMvc = MockMvcBuilders.standaloneSetup(popularProductsController).build();
+    }
+
+    @Test
+    void should_return_popular_products() throws Exception {
+        UUID productId = UUID.randomUUID();
+        when(popularProducts.topProducts()).thenReturn(List.of(new PopularProduct(productId, 7)));
+
+        mockMvc.perform(get("/shopping/products/popular"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[{\"productId\":\"" + productId + "\",\"count\":7}]"));
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.webshoppingservice.api;
+
+import com.example.webshoppingservice.service.CartEventsConfig;
+import com.example.webshoppingservice.service.SseCartEventBroadcaster;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class ShoppingCartEventControllerTest {
+
+    private CartEventsConfig cartEventsConfig;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    public void setUp() {
+        cartEventsConfig = new CartEventsConfig();
+        SseCartEventBroadcaster broadcaster = new SseCartEventBroadcaster(cartEventsConfig, new SimpleMeterRegistry());
+        mockMvc = MockMvcBuilders.standaloneSetup(new ShoppingCartEventController(broadcaster, cartEventsConfig)).build();
+    }
+
+    @Test
+    void should_return_not_found_when_events_disabled() throws Exception {
+        mockMvc.perform(get("/shopping/cart/events"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void should_open_event_stream_when_events_enabled() throws Exception {
+        cartEventsConfig.setEnabled(true);
+
+        mockMvc.perform(get("/shopping/cart/events"))
+                .andExpect(status().isOk())
+                .andExpect(request().asyncStarted());
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.webshoppingservice.api;
 
 import com.example.webshoppingservice.model.*;
+import com.example.webshoppingservice.service.IdempotentShoppingCartCreator;
 import com.example.webshoppingservice.service.ShoppingService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
@@ -9,6 +10,7 @@ import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
@@ -22,9 +24,14 @@ import java.util.List;
 import java.util.UUID;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 class ShoppingControllerTest {
@@ -58,6 +65,8 @@ class ShoppingControllerTest {
     private static final ShoppingCartRequestBody BODY = new ShoppingCartRequestBody(List.of(UUID.randomUUID()));
     @Mock
     private ShoppingService shoppingService;
+    @Mock
+    private IdempotentShoppingCartCreator idempotentShoppingCartCreator;
 
     @InjectMocks
     private ShoppingController shoppingController;
@@ -86,6 +95,25 @@ class ShoppingControllerTest {
                 .andExpect(content().json(objectMapper.writeValueAsString(SHOPPING_CART)));
     }
 
+    @Test
+    void should_create_shopping_cart_once_per_idempotency_key() throws Exception {
+        when(idempotentShoppingCartCreator.createShoppingCart(any(), any()))
+                .thenReturn(SHOPPING_CART);
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        String requestBodyJson = objectMapper.writeValueAsString(BODY);
+
+        mockMvc.perform(post("/shopping/cart")
+                        .header(ShoppingController.IDEMPOTENCY_KEY_HEADER, "retry-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(requestBodyJson))
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(SHOPPING_CART)));
+        verify(idempotentShoppingCartCreator).createShoppingCart("retry-1", BODY);
+        verify(shoppingService, never()).createShoppingCart(any());
+    }
+
     @Test
     void should_return_error_if_wrong_shopping_cart_url() throws Exception {
         when(shoppingService.createShoppingCart(any()))
@@ -156,6 +184,118 @@ class ShoppingControllerTest {
                 .andExpect(content().json(objectMapper.writeValueAsString(SHOPPING_CART)));
     }
 
+    @Test
+    void should_return_etag_for_versioned_shopping_cart() throws Exception {
+        UUID cartId = UUID.randomUUID();
+        ShoppingCart versionedCart = new ShoppingCart(cartId, Collections.emptyList(), LocalDateTime.now(), 3L);
+        when(shoppingService.retrieveShoppingCart(any()))
+                .thenReturn(versionedCart);
+
+        mockMvc.perform(get("/shopping/cart/{cartId}", cartId))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3\""));
+    }
+
+    @Test
+    void should_return_not_modified_if_etag_matches() throws Exception {
+        UUID cartId = UUID.randomUUID();
+        ShoppingCart versionedCart = new ShoppingCart(cartId, Collections.emptyList(), LocalDateTime.now(), 3L);
+        when(shoppingService.retrieveShoppingCart(any()))
+                .thenReturn(versionedCart);
+
+        mockMvc.perform(get("/shopping/cart/{cartId}", cartId)
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"3\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    void should_return_page_of_shopping_cart_with_total_count() throws Exception {
+        UUID cartId = UUID.randomUUID();
+        ShoppingCart pageCart = new ShoppingCart(cartId, List.of(Product.builder().id(UUID.randomUUID()).name("Test product").build()),
+                LocalDateTime.now(), 3L);
+        when(shoppingService.retrieveShoppingCartPage(any(), anyInt(), any(), any()))
+                .thenReturn(new ShoppingCartPage(pageCart, 42));
+
+        mockMvc.perform(get("/shopping/cart/{cartId}", cartId)
+                        .param("offset", "10")
+                        .param("limit", "1")
+                        .param("fields", "name"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(ShoppingController.TOTAL_COUNT_HEADER, "42"))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3-10-1-" + Integer.toHexString(List.of("name").hashCode()) + "\""))
+                .andExpect(jsonPath("$.products[0].name").value("Test product"));
+        verify(shoppingService).retrieveShoppingCartPage(cartId, 10, 1, List.of("name"));
+    }
+
+    @Test
+    void should_default_page_to_remaining_products_with_all_fields() throws Exception {
+        UUID cartId = UUID.randomUUID();
+        when(shoppingService.retrieveShoppingCartPage(any(), anyInt(), any(), any()))
+                .thenReturn(new ShoppingCartPage(SHOPPING_CART, 1));
+
+        mockMvc.perform(get("/shopping/cart/{cartId}", cartId)
+                        .param("offset", "0"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(ShoppingController.TOTAL_COUNT_HEADER, "1"));
+        verify(shoppingService).retrieveShoppingCartPage(cartId, 0, null, List.of());
+    }
+
+    @Test
+    void should_return_not_modified_for_page_if_etag_matches() throws Exception {
+        UUID cartId = UUID.randomUUID();
+        ShoppingCart versionedCart = new ShoppingCart(cartId, Collections.emptyList(), LocalDateTime.now(), 3L);
+        when(shoppingService.retrieveShoppingCartPage(any(), anyInt(), any(), any()))
+                .thenReturn(new ShoppingCartPage(versionedCart, 0));
+
+        String eTag = mockMvc.perform(get("/shopping/cart/{cartId}", cartId)
+                        .param("limit", "10"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/shopping/cart/{cartId}", cartId)
+                        .param("limit", "10")
+                        .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    void should_not_match_full_cart_etag_against_page() throws Exception {
+        UUID cartId = UUID.randomUUID();
+        ShoppingCart versionedCart = new ShoppingCart(cartId, Collections.emptyList(), LocalDateTime.now(), 3L);
+        when(shoppingService.retrieveShoppingCartPage(any(), anyInt(), any(), any()))
+                .thenReturn(new ShoppingCartPage(versionedCart, 0));
+
+        mockMvc.perform(get("/shopping/cart/{cartId}", cartId)
+                        .param("limit", "10")
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"3\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string(ShoppingController.TOTAL_COUNT_HEADER, "0"));
+    }
+
+    @Test
+    void should_not_match_etag_of_other_page() throws Exception {
+        UUID cartId = UUID.randomUUID();
+        ShoppingCart versionedCart = new ShoppingCart(cartId, Collections.emptyList(), LocalDateTime.now(), 3L);
+        when(shoppingService.retrieveShoppingCartPage(any(), anyInt(), any(), any()))
+                .thenReturn(new ShoppingCartPage(versionedCart, 0));
+        String eTag = mockMvc.perform(get("/shopping/cart/{cartId}", cartId)
+                        .param("limit", "10"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/shopping/cart/{cartId}", cartId)
+                        .param("offset", "10")
+                        .param("limit", "10")
+                        .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/shopping/cart/{cartId}", cartId)
+                        .param("limit", "10")
+                        .param("fields", "name")
+                        .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isOk());
+    }
+
     @Test
     void should_return_error_if_get_cart_returned_error() throws Exception {
         UUID cartId = UUID.randomUUID();
@@ -178,7 +318,7 @@ class ShoppingControllerTest {
     @Test
     void should_return_updated_shopping_cart() throws Exception {
         UUID cartId = UUID.randomUUID();
-        when(shoppingService.editShoppingCart(any(), any()))
+        when(shoppingService.editShoppingCart(any(), any(), any()))
                 .thenReturn(SHOPPING_CART);
 
         ObjectMapper objectMapper = new ObjectMapper();
@@ -192,10 +332,70 @@ class ShoppingControllerTest {
                 .andExpect(content().json(objectMapper.writeValueAsString(SHOPPING_CART)));
     }
 
+    @Test
+    void should_pass_if_match_version_to_edit() throws Exception {
+        UUID cartId = UUID.randomUUID();
+        when(shoppingService.editShoppingCart(any(), any(), any()))
+                .thenReturn(SHOPPING_CART);
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        String requestBodyJson = objectMapper.writeValueAsString(BODY);
+
+        mockMvc.perform(put("/shopping/cart/{cartId}", cartId)
+                        .header(HttpHeaders.IF_MATCH, "\"7\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(requestBodyJson))
+                .andExpect(status().isOk());
+
+        verify(shoppingService).editShoppingCart(cartId, BODY, 7L);
+    }
+
+    @Test
+    void should_pass_if_match_version_to_every_write() throws Exception {
+        UUID cartId = UUID.randomUUID();
+        UUID sourceCartId = UUID.randomUUID();
+        UUID productId = UUID.randomUUID();
+        when(shoppingService.addProductsToShoppingCart(any(), any(), any())).thenReturn(SHOPPING_CART);
+        when(shoppingService.removeProductsFromShoppingCart(any(), any(), any())).thenReturn(SHOPPING_CART);
+        when(shoppingService.mergeShoppingCarts(any(), any(), any())).thenReturn(SHOPPING_CART);
+
+        mockMvc.perform(patch("/shopping/cart/{cartId}/add", cartId).param("productIds", productId.toString())
+                        .header(HttpHeaders.IF_MATCH, "\"7\""))
+                .andExpect(status().isOk());
+        mockMvc.perform(patch("/shopping/cart/{cartId}/remove", cartId).param("productIds", productId.toString())
+                        .header(HttpHeaders.IF_MATCH, "W/\"8\""))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/shopping/cart/{cartId}/merge/{sourceCartId}", cartId, sourceCartId)
+                        .header(HttpHeaders.IF_MATCH, "\"9\""))
+                .andExpect(status().isOk());
+        mockMvc.perform(delete("/shopping/cart/{cartId}", cartId)
+                        .header(HttpHeaders.IF_MATCH, "\"10\""))
+                .andExpect(status().isOk());
+
+        verify(shoppingService).addProductsToShoppingCart(cartId, List.of(productId), 7L);
+        verify(shoppingService).removeProductsFromShoppingCart(cartId, List.of(productId), 8L);
+        verify(shoppingService).mergeShoppingCarts(cartId, sourceCartId, 9L);
+        verify(shoppingService).deleteShoppingCart(cartId, 10L);
+    }
+
+    @Test
+    void should_return_precondition_failed_if_if_match_not_a_version() throws Exception {
+        UUID cartId = UUID.randomUUID();
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        String requestBodyJson = objectMapper.writeValueAsString(BODY);
+
+        mockMvc.perform(put("/shopping/cart/{cartId}", cartId)
+                        .header(HttpHeaders.IF_MATCH, "\"abc\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(requestBodyJson))
+                .andExpect(status().isPreconditionFailed());
+    }
+
     @Test
     void should_return_error_if_edit_returned_error() throws Exception {
         UUID cartId = UUID.randomUUID();
-        when(shoppingService.editShoppingCart(any(), any()))
+        when(shoppingService.editShoppingCart(any(), any(), any()))
                 .thenThrow(ERROR);
 
         ObjectMapper objectMapper = new ObjectMapper();
@@ -209,7 +409,7 @@ class ShoppingControllerTest {
 
     @Test
     void should_return_bad_request_if_cart_id_edit_not_uuid() throws Exception {
-        when(shoppingService.editShoppingCart(any(), any()))
+        when(shoppingService.editShoppingCart(any(), any(), any()))
                 .thenReturn(SHOPPING_CART);
 
         ObjectMapper objectMapper = new ObjectMapper();
@@ -224,7 +424,7 @@ class ShoppingControllerTest {
     @Test
     void should_return_bad_request_if_edit_body_not_valid() throws Exception {
         UUID cartId = UUID.randomUUID();
-        when(shoppingService.editShoppingCart(any(), any()))
+        when(shoppingService.editShoppingCart(any(), any(), any()))
                 .thenReturn(SHOPPING_CART);
 
         mockMvc.perform(put("/shopping/cart/{cartId}", cartId)
@@ -236,7 +436,7 @@ class ShoppingControllerTest {
     @Test
     void should_return_shopping_cart_with_added_products() throws Exception {
         UUID cartId = UUID.randomUUID();
-        when(shoppingService.addProductsToShoppingCart(any(), any()))
+        when(shoppingService.addProductsToShoppingCart(any(), any(), any()))
                 .thenReturn(SHOPPING_CART);
 
         ObjectMapper objectMapper = new ObjectMapper();
@@ -250,7 +450,7 @@ class ShoppingControllerTest {
     @Test
     void should_return_error_id_add_products_returned_error() throws Exception {
         UUID cartId = UUID.randomUUID();
-        when(shoppingService.addProductsToShoppingCart(any(), any()))
+        when(shoppingService.addProductsToShoppingCart(any(), any(), any()))
                 .thenThrow(ERROR);
 
         mockMvc.perform(patch("/shopping/cart/{cartId}/add?productIds=0073bddf-dcd5-4715-b914-eb48c35b9016", cartId))
@@ -260,7 +460,7 @@ class ShoppingControllerTest {
     @Test
     void should_return_bad_request_if_query_params_not_uuid() throws Exception {
         UUID cartId = UUID.randomUUID();
-        when(shoppingService.addProductsToShoppingCart(any(), any()))
+        when(shoppingService.addProductsToShoppingCart(any(), any(), any()))
                 .thenReturn(SHOPPING_CART);
 
         mockMvc.perform(patch("/shopping/cart/{cartId}/add?productIds=8c35b9016", cartId))
@@ -269,7 +469,7 @@ class ShoppingControllerTest {
 
     @Test
     void should_return_bad_request_if_add_products_path_variable_not_uuid() throws Exception {
-        when(shoppingService.addProductsToShoppingCart(any(), any()))
+        when(shoppingService.addProductsToShoppingCart(any(), any(), any()))
                 .thenReturn(SHOPPING_CART);
 
         mockMvc.perform(patch("/shopping/cart/{cartId}/add?productIds=0073bddf-dcd5-4715-b914-eb48c35b9016", NOT_UUID))
@@ -279,7 +479,7 @@ class ShoppingControllerTest {
     @Test
     void should_return_shopping_cart_with_removed_products() throws Exception {
         UUID cartId = UUID.randomUUID();
-        when(shoppingService.removeProductsFromShoppingCart(any(), any()))
+        when(shoppingService.removeProductsFromShoppingCart(any(), any(), any()))
                 .thenReturn(SHOPPING_CART);
 
         ObjectMapper objectMapper = new ObjectMapper();
@@ -293,7 +493,7 @@ class ShoppingControllerTest {
     @Test
     void should_return_error_id_remove_products_returned_error() throws Exception {
         UUID cartId = UUID.randomUUID();
-        when(shoppingService.removeProductsFromShoppingCart(any(), any()))
+        when(shoppingService.removeProductsFromShoppingCart(any(), any(), any()))
                 .thenThrow(ERROR);
 
         mockMvc.perform(patch("/shopping/cart/{cartId}/remove?productIds=0073bddf-dcd5-4715-b914-eb48c35b9016", cartId))
@@ -303,7 +503,7 @@ class ShoppingControllerTest {
     @Test
     void should_return_bad_request_if_query_params_not_uuid_for_remove_products() throws Exception {
         UUID cartId = UUID.randomUUID();
-        when(shoppingService.removeProductsFromShoppingCart(any(), any()))
+        when(shoppingService.removeProductsFromShoppingCart(any(), any(), any()))
                 .thenReturn(SHOPPING_CART);
 
         mockMvc.perform(patch("/shopping/cart/{cartId}/remove?productIds=8c35b9016", cartId))
@@ -312,13 +512,36 @@ class ShoppingControllerTest {
 
     @Test
     void should_return_bad_request_if_remove_products_path_variable_not_uuid() throws Exception {
-        when(shoppingService.removeProductsFromShoppingCart(any(), any()))
+        when(shoppingService.removeProductsFromShoppingCart(any(), any(), any()))
                 .thenReturn(SHOPPING_CART);
 
         mockMvc.perform(patch("/shopping/cart/{cartId}/remove?productIds=0073bddf-dcd5-4715-b914-eb48c35b9016", NOT_UUID))
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    void should_return_merged_shopping_cart() throws Exception {
+        UUID cartId = UUID.randomUUID();
+        UUID sourceCartId = UUID.randomUUID();
+        when(shoppingService.mergeShoppingCarts(cartId, sourceCartId, null))
+                .thenReturn(SHOPPING_CART);
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+
+        mockMvc.perform(post("/shopping/cart/{cartId}/merge/{sourceCartId}", cartId, sourceCartId))
+                .andExpect(status().isOk())
+                .andExpect(content().json(objectMapper.writeValueAsString(SHOPPING_CART)));
+
+        verify(shoppingService).mergeShoppingCarts(cartId, sourceCartId, null);
+    }
+
+    @Test
+    void should_return_bad_request_if_merge_source_not_uuid() throws Exception {
+        mockMvc.perform(post("/shopping/cart/{cartId}/merge/{sourceCartId}", UUID.randomUUID(), NOT_UUID))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void should_return_empty_for_removed_cart() throws Exception {
         UUID cartId = UUID.randomUUID();
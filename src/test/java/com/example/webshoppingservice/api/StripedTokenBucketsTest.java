@@ -0,0 +1,49 @@
+package com.example.webshoppingservice.api;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StripedTokenBucketsTest {
+
+    private static final long START = TimeUnit.SECONDS.toNanos(1_000);
+
+    @Test
+    void should_admit_burst_then_reject_until_refilled() {
+        StripedTokenBuckets tokenBuckets = new StripedTokenBuckets(1024, 5, 10);
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(tokenBuckets.tryAcquire("client", START)).isZero();
+        }
+        long waitNanos = tokenBuckets.tryAcquire("client", START);
+
+        assertThat(waitNanos).isEqualTo(TimeUnit.MILLISECONDS.toNanos(100));
+        assertThat(tokenBuckets.tryAcquire("client", START + waitNanos)).isZero();
+        assertThat(tokenBuckets.tryAcquire("client", START + waitNanos)).isPositive();
+    }
+
+    @Test
+    void should_refill_at_configured_rate() {
+        StripedTokenBuckets tokenBuckets = new StripedTokenBuckets(1024, 1, 10);
+
+        int admitted = 0;
+        for (long now = START; now < START + TimeUnit.SECONDS.toNanos(10); now += TimeUnit.MILLISECONDS.toNanos(1)) {
+            if (tokenBuckets.tryAcquire("client", now) == 0) {
+                admitted++;
+            }
+        }
+
+        assertThat(admitted).isEqualTo(100);
+    }
+
+    @Test
+    void should_keep_clients_apart() {
+        StripedTokenBuckets tokenBuckets = new StripedTokenBuckets(1024, 1, 1);
+
+        assertThat(tokenBuckets.tryAcquire("client-a", START)).isZero();
+        assertThat(tokenBuckets.tryAcquire("client-a", START)).isPositive();
+        assertThat(tokenBuckets.tryAcquire("client-b", START)).isZero();
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.webshoppingservice.client;
+
+import com.example.webshoppingservice.ProductDataProvider;
+import com.example.webshoppingservice.model.Product;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LocalProductCatalogTest {
+
+    private final Product product = ProductDataProvider.getSimpleProduct();
+    private MeterRegistry meterRegistry;
+    private LocalProductCatalogConfig config;
+    private LocalProductCatalog localCatalog;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        config = new LocalProductCatalogConfig();
+        localCatalog = new LocalProductCatalog(config, meterRegistry);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        localCatalog.shutdown();
+    }
+
+    @Test
+    void should_answer_lookups_from_fresh_catalog() {
+        localCatalog.replace(List.of(product));
+
+        assertThat(localCatalog.findProducts(Set.of(product.getId()))).contains(List.of(product));
+        assertThat(localCatalog.findProducts(Set.of(product.getId(), UUID.randomUUID()))).isEmpty();
+        assertThat(lookups("hit")).isEqualTo(1);
+        assertThat(lookups("miss")).isEqualTo(1);
+    }
+
+    @Test
+    void should_not_answer_before_first_refresh() {
+        assertThat(localCatalog.findProducts(Set.of(product.getId()))).isEmpty();
+        assertThat(localCatalog.size()).isZero();
+    }
+
+    @Test
+    void should_not_answer_from_stale_catalog() {
+        config.setRefreshInterval(Duration.ZERO);
+        localCatalog.replace(List.of(product));
+
+        assertThat(localCatalog.findProducts(Set.of(product.getId()))).isEmpty();
+        assertThat(lookups("stale")).isEqualTo(1);
+    }
+
+    @Test
+    void should_not_answer_when_disabled() {
+        localCatalog.replace(List.of(product));
+        config.setEnabled(false);
+
+        assertThat(localCatalog.findProducts(Set.of(product.getId()))).isEmpty();
+    }
+
+    @Test
+    void should_encode_fetched_catalog_in_background() throws InterruptedException {
+        localCatalog.onCatalogRefresh(List.of(product));
+
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (localCatalog.size() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(localCatalog.findProducts(Set.of(product.getId()))).contains(List.of(product));
+    }
+
+    private double lookups(final String result) {
+        return meterRegistry.get("shopping.catalog.local.lookups").tag("result", result).counter().count();
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.webshoppingservice.client;
+
+import com.example.webshoppingservice.ProductDataProvider;
+import com.example.webshoppingservice.model.Category;
+import com.example.webshoppingservice.model.Product;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OffHeapProductCatalogTest {
+
+    @Test
+    void should_decode_stored_products() {
+        List<Product> products = IntStream.range(0, 1_000).mapToObj(i -> ProductDataProvider.getSimpleProduct()).toList();
+        products.forEach(product -> product.setPrice(new BigDecimal("1234567890.123456789")));
+        products.get(0).setUpdatedAt(LocalDateTime.of(2023, 10, 19, 19, 0, 1, 123_456_789));
+
+        OffHeapProductCatalog catalog = OffHeapProductCatalog.of(products);
+
+        assertThat(catalog.size()).isEqualTo(products.size());
+        assertThat(products).allMatch(product -> catalog.find(product.getId()).orElseThrow().equals(product));
+    }
+
+    @Test
+    void should_keep_missing_values_missing() {
+        Product product = Product.builder().id(UUID.randomUUID()).name("zażółć").build();
+
+        OffHeapProductCatalog catalog = OffHeapProductCatalog.of(List.of(product));
+
+        assertThat(catalog.find(product.getId())).contains(product);
+    }
+
+    @Test
+    void should_spread_products_over_chunks() {
+        List<Product> products = IntStream.range(0, 100).mapToObj(i -> ProductDataProvider.getSimpleProduct()).toList();
+
+        OffHeapProductCatalog catalog = OffHeapProductCatalog.of(products, 1_024);
+
+        assertThat(products).allMatch(product -> catalog.find(product.getId()).orElseThrow().equals(product));
+    }
+
+    @Test
+    void should_return_empty_for_unknown_id() {
+        OffHeapProductCatalog catalog = OffHeapProductCatalog.of(List.of(ProductDataProvider.getSimpleProduct()));
+
+        assertThat(catalog.find(UUID.randomUUID())).isEmpty();
+        assertThat(catalog.find(null)).isEmpty();
+    }
+
+    @Test
+    void should_keep_last_product_for_duplicate_id() {
+        Product product = ProductDataProvider.getSimpleProduct();
+        Product repriced = ProductDataProvider.getSimpleProduct();
+        repriced.setId(product.getId());
+        repriced.setPrice(BigDecimal.ONE);
+
+        OffHeapProductCatalog catalog = OffHeapProductCatalog.of(List.of(product, repriced));
+
+        assertThat(catalog.size()).isEqualTo(1);
+        assertThat(catalog.find(product.getId())).contains(repriced);
+    }
+
+    @Test
+    void should_keep_prices_with_long_unscaled_value() {
+        Product product = ProductDataProvider.getSimpleProduct();
+        product.setPrice(new BigDecimal("9".repeat(1_000) + ".99"));
+
+        OffHeapProductCatalog catalog = OffHeapProductCatalog.of(List.of(product));
+
+        assertThat(catalog.find(product.getId()).orElseThrow().getPrice()).isEqualTo(product.getPrice());
+    }
+
+    @Test
+    void should_keep_missing_reviews_and_categories() {
+        Product product = ProductDataProvider.getSimpleProduct();
+        product.setReviews(Arrays.asList(null, product.getReviews().get(0)));
+        product.setCategories(Arrays.asList(Category.AUTOMOTIVE, null));
+
+        OffHeapProductCatalog catalog = OffHeapProductCatalog.of(List.of(product));
+
+        assertThat(catalog.find(product.getId())).contains(product);
+    }
+
+    @Test
+    void should_allocate_only_encoded_bytes() {
+        List<Product> products = IntStream.range(0, 100).mapToObj(i -> ProductDataProvider.getSimpleProduct()).toList();
+
+        OffHeapProductCatalog small = OffHeapProductCatalog.of(products.subList(0, 1));
+        OffHeapProductCatalog chunked = OffHeapProductCatalog.of(products, 1_024);
+
+        assertThat(small.allocatedBytes()).isEqualTo(small.encodedBytes()).isLessThan(1_024);
+        assertThat(chunked.allocatedBytes()).isEqualTo(chunked.encodedBytes());
+    }
+
+    @Test
+    void should_share_chunks_that_did_not_change() {
+        List<Product> products = IntStream.range(0, 20).mapToObj(i -> ProductDataProvider.getSimpleProduct()).toList();
+        OffHeapProductCatalog catalog = OffHeapProductCatalog.of(products, 1_024);
+
+        OffHeapProductCatalog unchanged = OffHeapProductCatalog.of(products, 1_024, catalog);
+        List<Product> lastRepriced = new ArrayList<>(products);
+        Product repriced = ProductDataProvider.getSimpleProduct();
+        repriced.setId(products.get(19).getId());
+        lastRepriced.set(19, repriced);
+        OffHeapProductCatalog changed = OffHeapProductCatalog.of(lastRepriced, 1_024, catalog);
+
+        assertThat(unchanged.chunks()).hasSameSizeAs(catalog.chunks());
+        for (int i = 0; i < catalog.chunks().size(); i++) {
+            assertThat(unchanged.chunks().get(i)).isSameAs(catalog.chunks().get(i));
+        }
+        assertThat(changed.chunks().get(0)).isSameAs(catalog.chunks().get(0));
+        assertThat(changed.chunks().get(changed.chunks().size() - 1)).isNotSameAs(catalog.chunks().get(catalog.chunks().size() - 1));
+        assertThat(changed.find(repriced.getId())).contains(repriced);
+        assertThat(unchanged.find(products.get(0).getId())).contains(products.get(0));
+    }
+
+    @Test
+    void should_find_all_requested_products_in_catalog_order() {
+        List<Product> products = IntStream.range(0, 10).mapToObj(i -> ProductDataProvider.getSimpleProduct()).toList();
+
+        OffHeapProductCatalog catalog = OffHeapProductCatalog.of(products, 1_024);
+
+        assertThat(catalog.findAll(List.of(products.get(7).getId(), products.get(2).getId())).orElseThrow())
+                .containsExactly(products.get(2), products.get(7));
+        assertThat(catalog.findAll(List.of(products.get(7).getId(), UUID.randomUUID()))).isEmpty();
+        assertThat(catalog.findAll(List.of()).orElseThrow()).isEmpty();
+    }
+}
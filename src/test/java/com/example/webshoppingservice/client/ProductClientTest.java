@@ -0,0 +1,69 @@
+package com.example.webshoppingservice.client;
+
+import com.example.webshoppingservice.ProductDataProvider;
+import com.example.webshoppingservice.model.Product;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.when;
+
+class ProductClientTest {
+
+    private static final String PRODUCTS_URL = "http://search-service/search/products";
+
+    @Mock
+    private RestTemplate restTemplate;
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private MeterRegistry meterRegistry;
+    private ProductClient productClient;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        ProductConfig config = new ProductConfig();
+        config.setUrl("http://search-service/search");
+        productClient = new ProductClient(restTemplate, config, objectMapper, meterRegistry);
+    }
+
+    @Test
+    void should_time_fetch_and_deserialize_and_record_catalog_size() throws Exception {
+        List<Product> catalog = List.of(ProductDataProvider.getSimpleProduct(), ProductDataProvider.getSimpleProduct());
+        when(restTemplate.getForObject(PRODUCTS_URL, byte[].class)).thenReturn(objectMapper.writeValueAsBytes(catalog));
+
+        assertThat(productClient.getAllProducts()).containsExactlyElementsOf(catalog);
+
+        assertThat(meterRegistry.get("shopping.catalog.fetch").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("shopping.catalog.deserialize").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("shopping.catalog.size").summary().totalAmount()).isEqualTo(2);
+    }
+
+    @Test
+    void should_return_empty_catalog_for_empty_body() {
+        when(restTemplate.getForObject(PRODUCTS_URL, byte[].class)).thenReturn(null);
+
+        assertThat(productClient.getAllProducts()).isEmpty();
+        assertThat(meterRegistry.get("shopping.catalog.size").summary().count()).isEqualTo(1);
+    }
+
+    @Test
+    void should_fail_on_unreadable_catalog() {
+        when(restTemplate.getForObject(PRODUCTS_URL, byte[].class)).thenReturn("not json".getBytes(StandardCharsets.UTF_8));
+
+        assertThrows(RestClientException.class, () -> productClient.getAllProducts());
+        assertThat(meterRegistry.get("shopping.catalog.deserialize").timer().count()).isEqualTo(1);
+    }
+}
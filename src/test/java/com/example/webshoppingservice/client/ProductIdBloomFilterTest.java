@@ -0,0 +1,51 @@
+package com.example.webshoppingservice.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ProductIdBloomFilterTest {
+
+    private static final int CATALOG_SIZE = 100_000;
+    private static final int PROBES = 100_000;
+
+    @Test
+    void should_contain_every_inserted_id() {
+        List<UUID> ids = randomIds(CATALOG_SIZE);
+
+        ProductIdBloomFilter filter = ProductIdBloomFilter.create(ids, 0.01);
+
+        assertThat(ids).allMatch(filter::mightContain);
+    }
+
+    @Test
+    void should_keep_false_positive_rate_close_to_configured() {
+        ProductIdBloomFilter filter = ProductIdBloomFilter.create(randomIds(CATALOG_SIZE), 0.01);
+
+        long falsePositives = randomIds(PROBES).stream().filter(filter::mightContain).count();
+
+        assertThat((double) falsePositives / PROBES).isLessThan(0.02);
+        assertThat(filter.expectedFalsePositiveRate()).isBetween(0.005, 0.015);
+    }
+
+    @Test
+    void should_not_contain_anything_when_empty() {
+        ProductIdBloomFilter filter = ProductIdBloomFilter.create(List.of(), 0.01);
+
+        assertThat(randomIds(1_000)).noneMatch(filter::mightContain);
+    }
+
+    @Test
+    void should_reject_invalid_false_positive_rate() {
+        assertThrows(IllegalArgumentException.class, () -> ProductIdBloomFilter.create(List.of(), 1.0));
+    }
+
+    private static List<UUID> randomIds(final int count) {
+        return IntStream.range(0, count).mapToObj(i -> UUID.randomUUID()).toList();
+    }
+}
@@ -0,0 +1,263 @@
+package com.example.webshoppingservice.client;
+
+import com.example.webshoppingservice.ProductDataProvider;
+import com.example.webshoppingservice.model.Product;
+import io.micrometer.core.instrument.MeterRegistry;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ProductResolverTest {
+
+    private static final int CALLERS = 20;
+
+    @Mock
+    private ProductClient productClient;
+    @Mock
+    private LocalProductCatalog localCatalog;
+    @Mock
+    private CatalogRefreshListener catalogRefreshListener;
+    private MeterRegistry meterRegistry;
+    private ProductResolverConfig config;
+    private ProductResolver productResolver;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        config = new ProductResolverConfig();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        productResolver.shutdown();
+    }
+
+    @Test
+    void should_resolve_requests_within_window_with_one_catalog_fetch() throws Exception {
+        config.setWindow(Duration.ofMillis(200));
+        productResolver = new ProductResolver(productClient, config, localCatalog, List.of(catalogRefreshListener), meterRegistry);
+        List<Product> catalog = IntStream.range(0, CALLERS).mapToObj(i -> ProductDataProvider.getSimpleProduct()).toList();
+        when(productClient.getAllProducts()).thenReturn(catalog);
+
+        List<CompletableFuture<List<Product>>> results = catalog.stream()
+                .map(product -> productResolver.resolve(List.of(product.getId(), UUID.randomUUID())))
+                .toList();
+
+        for (int i = 0; i < CALLERS; i++) {
+            assertThat(results.get(i).get(5, TimeUnit.SECONDS)).containsExactly(catalog.get(i));
+        }
+        verify(productClient, times(1)).getAllProducts();
+        verify(catalogRefreshListener, timeout(5000)).onCatalogRefresh(catalog);
+        assertThat(meterRegistry.get("shopping.catalog.batch.size").summary().max()).isEqualTo(CALLERS);
+    }
+
+    @Test
+    void should_send_full_batch_without_waiting_for_window() throws Exception {
+        config.setWindow(Duration.ofMinutes(1));
+        config.setMaxBatchSize(2);
+        productResolver = new ProductResolver(productClient, config, localCatalog, List.of(catalogRefreshListener), meterRegistry);
+        Product product = ProductDataProvider.getSimpleProduct();
+        when(productClient.getAllProducts()).thenReturn(List.of(product));
+
+        CompletableFuture<List<Product>> first = productResolver.resolve(List.of(product.getId()));
+        CompletableFuture<List<Product>> second = productResolver.resolve(List.of(UUID.randomUUID()));
+
+        assertThat(first.get(5, TimeUnit.SECONDS)).containsExactly(product);
+        assertThat(second.get(5, TimeUnit.SECONDS)).isEmpty();
+    }
+
+    @Test
+    void should_keep_catalog_order() {
+        config.setWindow(Duration.ofMillis(1));
+        productResolver = new ProductResolver(productClient, config, localCatalog, List.of(catalogRefreshListener), meterRegistry);
+        Product product1 = ProductDataProvider.getSimpleProduct();
+        Product product2 = ProductDataProvider.getSimpleProduct();
+        when(productClient.getAllProducts()).thenReturn(List.of(product1, product2));
+
+        List<Product> result = productResolver.resolveProducts(List.of(product2.getId(), product1.getId()));
+
+        assertThat(result).containsExactly(product1, product2);
+    }
+
+    @Test
+    void should_fail_every_request_of_failed_batch() {
+        config.setWindow(Duration.ofMillis(100));
+        productResolver = new ProductResolver(productClient, config, localCatalog, List.of(catalogRefreshListener), meterRegistry);
+        ResourceAccessException error = new ResourceAccessException("search-service unavailable");
+        when(productClient.getAllProducts()).thenThrow(error);
+
+        CompletableFuture<List<Product>> first = productResolver.resolve(List.of(UUID.randomUUID()));
+        CompletableFuture<List<Product>> second = productResolver.resolve(List.of(UUID.randomUUID()));
+
+        assertThat(assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS))).hasCause(error);
+        assertThat(assertThrows(ExecutionException.class, () -> second.get(5, TimeUnit.SECONDS))).hasCause(error);
+        verify(productClient, times(1)).getAllProducts();
+        verify(catalogRefreshListener, never()).onCatalogRefresh(any());
+    }
+
+    @Test
+    void should_rethrow_client_error_from_blocking_resolve() {
+        config.setWindow(Duration.ofMillis(1));
+        productResolver = new ProductResolver(productClient, config, localCatalog, List.of(catalogRefreshListener), meterRegistry);
+        ResourceAccessException error = new ResourceAccessException("search-service unavailable");
+        when(productClient.getAllProducts()).thenThrow(error);
+
+        ResourceAccessException exception = assertThrows(ResourceAccessException.class, () ->
+                productResolver.resolveProducts(List.of(UUID.randomUUID()))
+        );
+        assertThat(exception).isSameAs(error);
+    }
+
+    @Test
+    void should_reject_batches_beyond_queue_with_service_unavailable() throws Exception {
+        config.setMaxBatchSize(1);
+        config.setMaxConcurrentBatches(1);
+        config.setMaxQueuedBatches(1);
+        productResolver = new ProductResolver(productClient, config, localCatalog, List.of(catalogRefreshListener), meterRegistry);
+        CountDownLatch fetching = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(productClient.getAllProducts()).thenAnswer(invocation -> {
+            fetching.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return List.of();
+        });
+
+        CompletableFuture<List<Product>> running = productResolver.resolve(List.of(UUID.randomUUID()));
+        assertThat(fetching.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<List<Product>> queued = productResolver.resolve(List.of(UUID.randomUUID()));
+        CompletableFuture<List<Product>> rejected = productResolver.resolve(List.of(UUID.randomUUID()));
+
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> rejected.get(1, TimeUnit.SECONDS));
+        assertThat(((ResponseStatusException) exception.getCause()).getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        release.countDown();
+        assertThat(running.get(5, TimeUnit.SECONDS)).isEmpty();
+        assertThat(queued.get(5, TimeUnit.SECONDS)).isEmpty();
+        assertThat(meterRegistry.get("shopping.catalog.batch.rejected").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void should_not_fetch_catalog_for_abandoned_lookups() throws Exception {
+        config.setMaxBatchSize(1);
+        config.setMaxConcurrentBatches(1);
+        productResolver = new ProductResolver(productClient, config, localCatalog, List.of(catalogRefreshListener), meterRegistry);
+        CountDownLatch fetching = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(productClient.getAllProducts()).thenAnswer(invocation -> {
+            fetching.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return List.of();
+        });
+
+        CompletableFuture<List<Product>> running = productResolver.resolve(List.of(UUID.randomUUID()));
+        assertThat(fetching.await(5, TimeUnit.SECONDS)).isTrue();
+        productResolver.resolve(List.of(UUID.randomUUID())).cancel(false);
+        release.countDown();
+
+        assertThat(running.get(5, TimeUnit.SECONDS)).isEmpty();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get("shopping.catalog.batch.abandoned").counter().count() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(meterRegistry.get("shopping.catalog.batch.abandoned").counter().count()).isEqualTo(1);
+        verify(productClient, times(1)).getAllProducts();
+    }
+
+    @Test
+    void should_answer_from_local_catalog_without_fetch() {
+        productResolver = new ProductResolver(productClient, config, localCatalog, List.of(catalogRefreshListener), meterRegistry);
+        Product product = ProductDataProvider.getSimpleProduct();
+        when(localCatalog.findProducts(Set.of(product.getId()))).thenReturn(Optional.of(List.of(product)));
+
+        assertThat(productResolver.resolveProducts(List.of(product.getId()))).containsExactly(product);
+        verify(productClient, never()).getAllProducts();
+    }
+
+    @Test
+    void should_fetch_catalog_when_local_catalog_cannot_answer() {
+        config.setWindow(Duration.ofMillis(1));
+        productResolver = new ProductResolver(productClient, config, localCatalog, List.of(catalogRefreshListener), meterRegistry);
+        Product product = ProductDataProvider.getSimpleProduct();
+        when(localCatalog.findProducts(any())).thenReturn(Optional.empty());
+        when(productClient.getAllProducts()).thenReturn(List.of(product));
+
+        assertThat(productResolver.resolveProducts(List.of(product.getId()))).containsExactly(product);
+        verify(productClient, times(1)).getAllProducts();
+    }
+
+    @Test
+    void should_record_catalog_fetch_and_match_jfr_events() throws Exception {
+        config.setWindow(Duration.ofMillis(1));
+        productResolver = new ProductResolver(productClient, config, localCatalog, List.of(catalogRefreshListener), meterRegistry);
+        List<Product> catalog = List.of(ProductDataProvider.getSimpleProduct(), ProductDataProvider.getSimpleProduct());
+        when(productClient.getAllProducts()).thenReturn(catalog);
+        Path file = Files.createTempFile("product-resolver-", ".jfr");
+
+        try (Recording recording = new Recording()) {
+            recording.enable("com.example.webshoppingservice.CatalogFetch");
+            recording.enable("com.example.webshoppingservice.ProductMatch");
+            recording.start();
+            productResolver.resolveProducts(List.of(catalog.get(0).getId(), UUID.randomUUID()));
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        Files.delete(file);
+        RecordedEvent fetch = events.stream().filter(event -> event.getEventType().getName().endsWith("CatalogFetch")).findFirst().orElseThrow();
+        RecordedEvent match = events.stream().filter(event -> event.getEventType().getName().endsWith("ProductMatch")).findFirst().orElseThrow();
+        assertThat(fetch.getInt("catalogSize")).isEqualTo(2);
+        assertThat(fetch.getInt("lookups")).isEqualTo(1);
+        assertThat(match.getInt("requestedProducts")).isEqualTo(2);
+        assertThat(match.getInt("matchedProducts")).isEqualTo(1);
+    }
+
+    @Test
+    void should_record_failed_catalog_fetch_jfr_event() throws Exception {
+        config.setWindow(Duration.ofMillis(1));
+        productResolver = new ProductResolver(productClient, config, localCatalog, List.of(catalogRefreshListener), meterRegistry);
+        when(productClient.getAllProducts()).thenThrow(new ResourceAccessException("search-service unavailable"));
+        Path file = Files.createTempFile("product-resolver-", ".jfr");
+
+        try (Recording recording = new Recording()) {
+            recording.enable("com.example.webshoppingservice.CatalogFetch");
+            recording.start();
+            assertThrows(ResourceAccessException.class, () -> productResolver.resolveProducts(List.of(UUID.randomUUID())));
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        Files.delete(file);
+        RecordedEvent fetch = events.stream().filter(event -> event.getEventType().getName().endsWith("CatalogFetch")).findFirst().orElseThrow();
+        assertThat(fetch.getBoolean("failed")).isTrue();
+        assertThat(fetch.getInt("lookups")).isEqualTo(1);
+    }
+}
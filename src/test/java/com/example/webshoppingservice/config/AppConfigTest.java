@@ -0,0 +1,47 @@
+package com.example.webshoppingservice.config;
+
+import com.example.webshoppingservice.ProductDataProvider;
+import com.example.webshoppingservice.model.Product;
+import com.example.webshoppingservice.model.ShoppingCart;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AppConfigTest {
+
+    private static final int PRODUCTS = 500;
+
+    private final ShoppingCart shoppingCart = new ShoppingCart(UUID.randomUUID(),
+            IntStream.range(0, PRODUCTS).mapToObj(i -> ProductDataProvider.getSimpleProduct()).toList(),
+            LocalDateTime.of(2023, 10, 19, 19, 0), 1L);
+
+    @Test
+    void should_register_blackbird_module_in_application_object_mapper() {
+        new ApplicationContextRunner()
+                .withConfiguration(AutoConfigurations.of(JacksonAutoConfiguration.class))
+                .withUserConfiguration(AppConfig.class)
+                .run(context -> assertThat(context.getBean(ObjectMapper.class).getRegisteredModuleIds())
+                        .contains(new BlackbirdModule().getTypeId()));
+    }
+
+    @Test
+    void should_serialize_cart_like_reflective_mapper() throws Exception {
+        ObjectMapper reflectiveMapper = Jackson2ObjectMapperBuilder.json().build();
+        ObjectMapper blackbirdMapper = Jackson2ObjectMapperBuilder.json().modulesToInstall(new AppConfig().blackbirdModule()).build();
+
+        assertThat(blackbirdMapper.readTree(blackbirdMapper.writeValueAsBytes(shoppingCart)))
+                .isEqualTo(reflectiveMapper.readTree(reflectiveMapper.writeValueAsBytes(shoppingCart)));
+        assertThat(blackbirdMapper.readValue(blackbirdMapper.writeValueAsBytes(shoppingCart.getProducts()), Product[].class))
+                .containsExactlyElementsOf(shoppingCart.getProducts());
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.webshoppingservice.config;
+
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.DefaultBootstrapContext;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.boot.context.config.ConfigDataEnvironmentPostProcessor;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.Resource;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JfrRecordingEndpointTest {
+
+    private JfrRecordingConfig config;
+    private JfrRecordingEndpoint endpoint;
+
+    @BeforeEach
+    public void setUp() {
+        config = new JfrRecordingConfig();
+        config.setSettings("default");
+        endpoint = new JfrRecordingEndpoint(config);
+    }
+
+    @Test
+    void should_return_recording_and_delete_it_once_read() throws Exception {
+        WebEndpointResponse<Resource> response = endpoint.record(Duration.ofMillis(200));
+
+        assertThat(response.getStatus()).isEqualTo(WebEndpointResponse.STATUS_OK);
+        Path recordingFile = response.getBody().getFile().toPath();
+        Path copy = Files.createTempFile("jfr-endpoint-", ".jfr");
+        try (InputStream inputStream = response.getBody().getInputStream()) {
+            Files.copy(inputStream, copy, StandardCopyOption.REPLACE_EXISTING);
+        }
+        assertThat(recordingFile).doesNotExist();
+        assertThat(RecordingFile.readAllEvents(copy)).isNotEmpty();
+        Files.delete(copy);
+    }
+
+    @Test
+    void should_reject_duration_above_maximum() throws Exception {
+        config.setMaxDuration(Duration.ofSeconds(1));
+
+        assertThat(endpoint.record(Duration.ofSeconds(2)).getStatus()).isEqualTo(WebEndpointResponse.STATUS_BAD_REQUEST);
+        assertThat(endpoint.record(Duration.ZERO).getStatus()).isEqualTo(WebEndpointResponse.STATUS_BAD_REQUEST);
+    }
+
+    @Test
+    void should_expose_endpoint_only_on_management_port() {
+        StandardEnvironment environment = new StandardEnvironment();
+        ConfigDataEnvironmentPostProcessor.applyTo(environment, new DefaultResourceLoader(), new DefaultBootstrapContext());
+
+        assertThat(environment.getProperty("management.endpoints.web.exposure.include")).contains("jfr");
+        assertThat(environment.getProperty("management.server.port")).isNotEqualTo(environment.getProperty("server.port"));
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.webshoppingservice.config;
+
+import com.example.webshoppingservice.ProductDataProvider;
+import com.example.webshoppingservice.model.Product;
+import com.example.webshoppingservice.model.ShoppingCart;
+import org.bson.BsonBinary;
+import org.bson.BsonBinarySubType;
+import org.bson.Document;
+import org.bson.UuidRepresentation;
+import org.bson.types.Binary;
+import org.bson.types.Decimal128;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MongoConfigTest {
+
+    private static final int PRODUCTS_PER_CART = 20;
+
+    private final MappingMongoConverter converter = converter(new MongoConfig().mongoCustomConversions());
+
+    @Test
+    void should_write_prices_as_decimal128_and_uuids_as_standard_binary() {
+        ShoppingCart shoppingCart = cart();
+
+        Document product = write(converter, shoppingCart).getList("products", Document.class).get(0);
+
+        assertThat(product.get("price")).isEqualTo(new Decimal128(new BigDecimal("1234.99")));
+        assertThat(product.get("_id")).isEqualTo(shoppingCart.getProducts().get(0).getId());
+    }
+
+    @Test
+    void should_read_back_written_cart() {
+        ShoppingCart shoppingCart = cart();
+
+        ShoppingCart result = converter.read(ShoppingCart.class, write(converter, shoppingCart));
+
+        assertThat(result).isEqualTo(shoppingCart);
+    }
+
+    @Test
+    void should_read_legacy_java_uuid_and_string_price() {
+        UUID id = UUID.randomUUID();
+        Document legacyDocument = new Document("_id", new Binary(BsonBinarySubType.UUID_LEGACY, javaLegacyBytes(id)))
+                .append("products", List.of(new Document("price", "12.50")));
+
+        ShoppingCart result = converter.read(ShoppingCart.class, legacyDocument);
+
+        assertThat(result.getId()).isEqualTo(id);
+        assertThat(result.getProducts().get(0).getPrice()).isEqualTo(new BigDecimal("12.50"));
+    }
+
+    @Test
+    void should_read_decimal128_price() {
+        Document document = new Document("_id", new Binary(BsonBinarySubType.UUID_STANDARD, uuidBytes(UUID.randomUUID())))
+                .append("products", List.of(new Document("price", new Decimal128(new BigDecimal("1234.99")))));
+
+        ShoppingCart result = converter.read(ShoppingCart.class, document);
+
+        assertThat(result.getProducts().get(0).getPrice()).isEqualTo(new BigDecimal("1234.99"));
+    }
+
+    private static ShoppingCart cart() {
+        List<Product> products = IntStream.range(0, PRODUCTS_PER_CART)
+                .mapToObj(i -> ProductDataProvider.getSimpleProduct())
+                .toList();
+        products.forEach(product -> product.setPrice(new BigDecimal("1234.99")));
+        return new ShoppingCart(UUID.randomUUID(), products, LocalDateTime.of(2023, 10, 19, 19, 0), 1L);
+    }
+
+    private static MappingMongoConverter converter(final MongoCustomConversions conversions) {
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        mappingContext.afterPropertiesSet();
+
+        MappingMongoConverter mongoConverter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        mongoConverter.setCustomConversions(conversions);
+        mongoConverter.afterPropertiesSet();
+        return mongoConverter;
+    }
+
+    private static Document write(final MappingMongoConverter mongoConverter, final ShoppingCart shoppingCart) {
+        Document document = new Document();
+        mongoConverter.write(shoppingCart, document);
+        return document;
+    }
+
+    private static byte[] uuidBytes(final UUID uuid) {
+        return new BsonBinary(uuid, UuidRepresentation.STANDARD).getData();
+    }
+
+    private static byte[] javaLegacyBytes(final UUID uuid) {
+        return new BsonBinary(uuid, UuidRepresentation.JAVA_LEGACY).getData();
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.webshoppingservice.repository;
+
+import com.example.webshoppingservice.ProductDataProvider;
+import com.example.webshoppingservice.model.Product;
+import com.example.webshoppingservice.model.ShoppingCart;
+import org.bson.BsonBinary;
+import org.bson.BsonBinarySubType;
+import org.bson.Document;
+import org.bson.UuidRepresentation;
+import org.bson.types.Binary;
+import org.bson.types.Decimal128;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Measures document and index size of generated carts in the current layout (standard UUIDs, Decimal128 prices)
+ * against the layout written before it (legacy Java UUIDs, String prices). Both UUID layouts take 16 bytes, and a
+ * Decimal128 price takes a few bytes more than a short price String, so the layouts are expected to be within 2%.
+ */
+@DataMongoTest
+class CartStorageSizeTestIT {
+
+    private static final int CARTS = 2_000;
+    private static final int PRODUCTS_PER_CART = 20;
+    private static final String CURRENT = "cartSizeCurrent";
+    private static final String PREVIOUS = "cartSizePrevious";
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @AfterEach
+    public void tearDown() {
+        mongoTemplate.dropCollection(CURRENT);
+        mongoTemplate.dropCollection(PREVIOUS);
+    }
+
+    @Test
+    void should_store_carts_and_indexes_within_two_percent_of_previous_layout() {
+        List<Document> current = IntStream.range(0, CARTS).mapToObj(i -> write(cart())).toList();
+        mongoTemplate.getCollection(CURRENT).insertMany(current);
+        mongoTemplate.getCollection(PREVIOUS).insertMany(current.stream().map(CartStorageSizeTestIT::previousLayout).toList());
+        for (String collection : List.of(CURRENT, PREVIOUS)) {
+            mongoTemplate.indexOps(collection).ensureIndex(new Index().on("products._id", Sort.Direction.ASC));
+            mongoTemplate.indexOps(collection).ensureIndex(new Index().on("insertDateTime", Sort.Direction.ASC));
+        }
+
+        Document currentStats = collStats(CURRENT);
+        Document previousStats = collStats(PREVIOUS);
+
+        long currentSize = currentStats.get("size", Number.class).longValue();
+        long previousSize = previousStats.get("size", Number.class).longValue();
+        assertThat(currentSize)
+                .as("document bytes, current %d vs previous %d", currentSize, previousSize)
+                .isLessThanOrEqualTo(withTolerance(previousSize));
+        Map<String, Long> currentIndexes = indexSizes(currentStats);
+        Map<String, Long> previousIndexes = indexSizes(previousStats);
+        currentIndexes.forEach((index, bytes) -> assertThat(bytes)
+                .as("%s index bytes, current %d vs previous %d", index, bytes, previousIndexes.get(index))
+                .isLessThanOrEqualTo(withTolerance(previousIndexes.get(index))));
+    }
+
+    private static long withTolerance(final long bytes) {
+        return bytes + bytes / 50;
+    }
+
+    private Document write(final ShoppingCart shoppingCart) {
+        Document document = new Document();
+        mongoTemplate.getConverter().write(shoppingCart, document);
+        return document;
+    }
+
+    private Document collStats(final String collection) {
+        return mongoTemplate.executeCommand(new Document("collStats", collection));
+    }
+
+    private static Map<String, Long> indexSizes(final Document stats) {
+        return stats.get("indexSizes", Document.class).entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, entry -> ((Number) entry.getValue()).longValue()));
+    }
+
+    /**
+     * Rewrites a current document the way the service stored it before: UUIDs as legacy Java subtype 3, prices as
+     * Strings.
+     */
+    private static Object previousLayout(final Object value) {
+        if (value instanceof Document document) {
+            Document previous = new Document();
+            document.forEach((key, field) -> previous.put(key, previousLayout(field)));
+            return previous;
+        }
+        if (value instanceof List<?> list) {
+            return list.stream().map(CartStorageSizeTestIT::previousLayout).toList();
+        }
+        if (value instanceof UUID uuid) {
+            return new Binary(BsonBinarySubType.UUID_LEGACY, new BsonBinary(uuid, UuidRepresentation.JAVA_LEGACY).getData());
+        }
+        if (value instanceof Decimal128 decimal) {
+            return decimal.bigDecimalValue().toString();
+        }
+        return value;
+    }
+
+    private static Document previousLayout(final Document document) {
+        return (Document) previousLayout((Object) document);
+    }
+
+    private static ShoppingCart cart() {
+        List<Product> products = IntStream.range(0, PRODUCTS_PER_CART)
+                .mapToObj(i -> {
+                    Product product = ProductDataProvider.getSimpleProduct();
+                    product.setPrice(BigDecimal.valueOf(1999 + i * 100L, 2));
+                    return product;
+                })
+                .toList();
+        return new ShoppingCart(UUID.randomUUID(), products, LocalDateTime.now(), 0L);
+    }
+}
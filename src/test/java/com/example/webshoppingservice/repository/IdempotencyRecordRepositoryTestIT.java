@@ -0,0 +1,113 @@
+package com.example.webshoppingservice.repository;
+
+import com.example.webshoppingservice.config.MongoIndexInitializer;
+import com.example.webshoppingservice.ProductDataProvider;
+import com.example.webshoppingservice.model.IdempotencyRecord;
+import com.example.webshoppingservice.model.ShoppingCart;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexField;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataMongoTest
+@Import(MongoIndexInitializer.class)
+class IdempotencyRecordRepositoryTestIT {
+
+    @Autowired
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private MongoIndexInitializer mongoIndexInitializer;
+
+    @BeforeEach
+    public void setUp() {
+        mongoIndexInitializer.ensureIndexes();
+    }
+
+    @Test
+    void should_reject_second_claim_of_same_key() {
+        String key = UUID.randomUUID().toString();
+        idempotencyRecordRepository.insert(claim(key, UUID.randomUUID()));
+
+        assertThrows(DuplicateKeyException.class, () -> idempotencyRecordRepository.insert(
+                claim(key, UUID.randomUUID())));
+    }
+
+    @Test
+    void should_let_only_one_request_take_over_claim() {
+        String key = UUID.randomUUID().toString();
+        UUID staleCartId = UUID.randomUUID();
+        idempotencyRecordRepository.insert(claim(key, staleCartId));
+
+        assertTrue(idempotencyRecordRepository.takeOverClaim(key, staleCartId, UUID.randomUUID(), Instant.now()));
+        assertFalse(idempotencyRecordRepository.takeOverClaim(key, staleCartId, UUID.randomUUID(), Instant.now()));
+    }
+
+    @Test
+    void should_store_cart_of_completed_claim() {
+        String key = UUID.randomUUID().toString();
+        ShoppingCart shoppingCart = new ShoppingCart(UUID.randomUUID(), List.of(ProductDataProvider.getSimpleProduct()), LocalDateTime.now(), 0L);
+        idempotencyRecordRepository.insert(claim(key, shoppingCart.getId()));
+
+        assertTrue(idempotencyRecordRepository.completeClaim(key, shoppingCart));
+
+        IdempotencyRecord completed = idempotencyRecordRepository.findById(key).orElseThrow();
+        assertTrue(completed.isCompleted());
+        assertEquals(shoppingCart.getProducts(), idempotencyRecordRepository.readShoppingCart(completed).getProducts());
+    }
+
+    @Test
+    void should_not_complete_or_release_claim_that_was_taken_over() {
+        String key = UUID.randomUUID().toString();
+        ShoppingCart staleCart = new ShoppingCart(UUID.randomUUID(), List.of(), LocalDateTime.now(), 0L);
+        UUID cartId = UUID.randomUUID();
+        idempotencyRecordRepository.insert(claim(key, staleCart.getId()));
+        idempotencyRecordRepository.takeOverClaim(key, staleCart.getId(), cartId, Instant.now());
+
+        assertFalse(idempotencyRecordRepository.completeClaim(key, staleCart));
+        idempotencyRecordRepository.releaseClaim(key, staleCart.getId());
+
+        assertEquals(cartId, idempotencyRecordRepository.findById(key).orElseThrow().getCartId());
+    }
+
+    @Test
+    void should_expire_records_with_ttl_index() {
+        IndexInfo createdAtIndex = mongoTemplate.indexOps(IdempotencyRecord.class).getIndexInfo().stream()
+                .filter(index -> index.isIndexForFields(List.of("createdAt")))
+                .findFirst()
+                .orElseThrow();
+
+        assertEquals(DurationStyle.detectAndParse(IdempotencyRecord.TIME_TO_LIVE), createdAtIndex.getExpireAfter().orElseThrow());
+    }
+
+    @Test
+    void should_not_index_stored_cart() {
+        List<String> indexedFields = mongoTemplate.indexOps(IdempotencyRecord.class).getIndexInfo().stream()
+                .flatMap(index -> index.getIndexFields().stream())
+                .map(IndexField::getKey)
+                .toList();
+
+        assertEquals(List.of("_id", "createdAt"), indexedFields.stream().sorted().toList());
+    }
+
+    private static IdempotencyRecord claim(final String key, final UUID cartId) {
+        Instant now = Instant.now();
+        return new IdempotencyRecord(key, "fingerprint", cartId, false, now, now, null);
+    }
+}
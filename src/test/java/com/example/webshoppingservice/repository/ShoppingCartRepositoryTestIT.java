@@ -1,23 +1,52 @@
 package com.example.webshoppingservice.repository;
 
+import com.example.webshoppingservice.ProductDataProvider;
+import com.example.webshoppingservice.config.MongoIndexInitializer;
+import com.example.webshoppingservice.model.Product;
 import com.example.webshoppingservice.model.ShoppingCart;
+import com.example.webshoppingservice.model.ShoppingCartPage;
+import org.bson.BsonBinarySubType;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 @DataMongoTest
+@Import(MongoIndexInitializer.class)
 class ShoppingCartRepositoryTestIT {
 
     @Autowired
     private ShoppingCartRepository shoppingCartRepository;
 
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private MongoIndexInitializer mongoIndexInitializer;
+
+    @BeforeEach
+    public void setUp() {
+        mongoIndexInitializer.ensureIndexes();
+    }
+
     @Test
     void should_find_cart_by_id() {
         UUID cartId = UUID.randomUUID();
@@ -41,4 +70,204 @@ class ShoppingCartRepositoryTestIT {
         assertFalse(foundCart.isPresent());
     }
 
+    @Test
+    void should_expire_only_carts_inserted_before_cutoff() {
+        assertExpiresOnlyCartsInsertedBeforeCutoff(false);
+    }
+
+    @Test
+    void should_expire_only_tagged_carts_inserted_before_cutoff() {
+        assertExpiresOnlyCartsInsertedBeforeCutoff(true);
+    }
+
+    @Test
+    void should_merge_source_products_into_target_and_delete_source() {
+        Product shared = ProductDataProvider.getSimpleProduct();
+        Product sourceOnly = ProductDataProvider.getSimpleProduct();
+        UUID targetId = UUID.randomUUID();
+        UUID sourceId = UUID.randomUUID();
+        shoppingCartRepository.save(new ShoppingCart(targetId, List.of(shared), LocalDateTime.now()));
+        shoppingCartRepository.save(new ShoppingCart(sourceId, List.of(shared, sourceOnly), LocalDateTime.now()));
+
+        Optional<ShoppingCart> mergedCart = shoppingCartRepository.mergeShoppingCarts(targetId, sourceId, null);
+
+        assertTrue(mergedCart.isPresent());
+        assertEquals(List.of(shared.getId(), sourceOnly.getId()),
+                mergedCart.get().getProducts().stream().map(Product::getId).toList());
+        assertEquals(1L, mergedCart.get().getVersion());
+        assertFalse(shoppingCartRepository.findShoppingCartById(sourceId).isPresent());
+    }
+
+    @Test
+    void should_keep_source_cart_when_merge_target_does_not_exist() {
+        UUID sourceId = UUID.randomUUID();
+        shoppingCartRepository.save(new ShoppingCart(sourceId, List.of(ProductDataProvider.getSimpleProduct()), LocalDateTime.now()));
+
+        Optional<ShoppingCart> mergedCart = shoppingCartRepository.mergeShoppingCarts(UUID.randomUUID(), sourceId, null);
+
+        assertFalse(mergedCart.isPresent());
+        assertTrue(shoppingCartRepository.findShoppingCartById(sourceId).isPresent());
+    }
+
+    @Test
+    void should_leave_both_carts_when_merge_target_has_other_version() {
+        UUID targetId = UUID.randomUUID();
+        UUID sourceId = UUID.randomUUID();
+        shoppingCartRepository.save(new ShoppingCart(targetId, List.of(), LocalDateTime.now()));
+        shoppingCartRepository.save(new ShoppingCart(sourceId, List.of(ProductDataProvider.getSimpleProduct()), LocalDateTime.now()));
+
+        assertThrows(OptimisticLockingFailureException.class, () -> shoppingCartRepository.mergeShoppingCarts(targetId, sourceId, 5L));
+
+        assertTrue(shoppingCartRepository.findShoppingCartById(targetId).orElseThrow().getProducts().isEmpty());
+        assertTrue(shoppingCartRepository.findShoppingCartById(sourceId).isPresent());
+    }
+
+    @Test
+    void should_reprice_product_in_carts_holding_it() {
+        Product repriced = ProductDataProvider.getSimpleProduct();
+        Product other = ProductDataProvider.getSimpleProduct();
+        UUID cartWithProduct = UUID.randomUUID();
+        UUID cartWithoutProduct = UUID.randomUUID();
+        shoppingCartRepository.save(new ShoppingCart(cartWithProduct, List.of(repriced, other), LocalDateTime.now()));
+        shoppingCartRepository.save(new ShoppingCart(cartWithoutProduct, List.of(other), LocalDateTime.now()));
+
+        long modifiedCarts = shoppingCartRepository.repriceProducts(Map.of(repriced.getId(), new BigDecimal("12.50")));
+
+        assertEquals(1, modifiedCarts);
+        ShoppingCart updatedCart = shoppingCartRepository.findShoppingCartById(cartWithProduct).orElseThrow();
+        assertEquals(0, new BigDecimal("12.50").compareTo(updatedCart.getProducts().get(0).getPrice()));
+        assertEquals(0, other.getPrice().compareTo(updatedCart.getProducts().get(1).getPrice()));
+        assertEquals(1L, updatedCart.getVersion());
+        assertEquals(0L, shoppingCartRepository.findShoppingCartById(cartWithoutProduct).orElseThrow().getVersion());
+        assertEquals(0, shoppingCartRepository.repriceProducts(Map.of(repriced.getId(), new BigDecimal("12.50"))));
+    }
+
+    @Test
+    void should_compare_prices_by_value_when_repricing() {
+        Product product = ProductDataProvider.getSimpleProduct();
+        product.setPrice(new BigDecimal("12.50"));
+        shoppingCartRepository.save(new ShoppingCart(UUID.randomUUID(), List.of(product), LocalDateTime.now()));
+
+        assertEquals(0, shoppingCartRepository.repriceProducts(Map.of(product.getId(), new BigDecimal("12.5"))));
+    }
+
+    @Test
+    void should_find_page_of_cart_products_with_selected_fields() {
+        List<Product> products = List.of(ProductDataProvider.getSimpleProduct(), ProductDataProvider.getSimpleProduct(),
+                ProductDataProvider.getSimpleProduct());
+        UUID cartId = UUID.randomUUID();
+        shoppingCartRepository.save(new ShoppingCart(cartId, products, LocalDateTime.now()));
+
+        ShoppingCartPage page = shoppingCartRepository.findShoppingCartPage(cartId, 1, 1, List.of("name")).orElseThrow();
+
+        assertEquals(3, page.totalProducts());
+        assertEquals(0L, page.shoppingCart().getVersion());
+        Product pageProduct = page.shoppingCart().getProducts().get(0);
+        assertEquals(1, page.shoppingCart().getProducts().size());
+        assertEquals(products.get(1).getId(), pageProduct.getId());
+        assertEquals(products.get(1).getName(), pageProduct.getName());
+        assertNull(pageProduct.getPrice());
+    }
+
+    @Test
+    void should_find_remaining_cart_products_without_limit() {
+        List<Product> products = List.of(ProductDataProvider.getSimpleProduct(), ProductDataProvider.getSimpleProduct());
+        UUID cartId = UUID.randomUUID();
+        shoppingCartRepository.save(new ShoppingCart(cartId, products, LocalDateTime.now()));
+
+        ShoppingCartPage page = shoppingCartRepository.findShoppingCartPage(cartId, 1, null, List.of()).orElseThrow();
+
+        assertEquals(List.of(products.get(1).getId()), page.shoppingCart().getProducts().stream().map(Product::getId).toList());
+        assertNotNull(page.shoppingCart().getProducts().get(0).getManufacturer());
+        assertEquals(2, page.totalProducts());
+        assertTrue(shoppingCartRepository.findShoppingCartPage(cartId, 5, 10, List.of()).orElseThrow().shoppingCart().getProducts().isEmpty());
+    }
+
+    @Test
+    void should_reject_unknown_product_field() {
+        UUID cartId = UUID.randomUUID();
+        shoppingCartRepository.save(new ShoppingCart(cartId, Collections.emptyList(), LocalDateTime.now()));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> shoppingCartRepository.findShoppingCartPage(cartId, 0, 1, List.of("colour")));
+    }
+
+    @Test
+    void should_store_cart_id_as_standard_binary_uuid() {
+        UUID cartId = UUID.randomUUID();
+        shoppingCartRepository.save(new ShoppingCart(cartId, Collections.emptyList(), LocalDateTime.now()));
+
+        BsonDocument storedCart = mongoTemplate.getCollection(collectionName())
+                .withDocumentClass(BsonDocument.class)
+                .find(mappedFilter(Query.query(Criteria.where("id").is(cartId))))
+                .first();
+
+        assertNotNull(storedCart);
+        assertTrue(storedCart.get("_id").isBinary());
+        assertEquals(BsonBinarySubType.UUID_STANDARD.getValue(), storedCart.getBinary("_id").getType());
+    }
+
+    @Test
+    void should_use_index_for_cart_id_queries() {
+        assertNoCollectionScan(Query.query(Criteria.where("id").is(UUID.randomUUID())));
+    }
+
+    @Test
+    void should_use_index_for_product_id_queries() {
+        assertNoCollectionScan(Query.query(Criteria.where("products.id").is(UUID.randomUUID())));
+    }
+
+    @Test
+    void should_use_index_for_old_carts_cleanup() {
+        assertNoCollectionScan(Query.query(Criteria.where("insertDateTime").lt(LocalDateTime.now())));
+    }
+
+    @Test
+    void should_use_index_for_tagged_carts_cleanup() {
+        assertNoCollectionScan(Query.query(Criteria.where("insertDateTime").lt(LocalDateTime.now())
+                .and(ShoppingCartRepositoryCustom.EXPIRED_AT).exists(true)));
+    }
+
+    private void assertExpiresOnlyCartsInsertedBeforeCutoff(final boolean tagged) {
+        UUID oldCart = UUID.randomUUID();
+        UUID newCart = UUID.randomUUID();
+        shoppingCartRepository.save(new ShoppingCart(oldCart, Collections.emptyList(), LocalDateTime.now().minusMinutes(5)));
+        shoppingCartRepository.save(new ShoppingCart(newCart, Collections.emptyList(), LocalDateTime.now()));
+
+        long expiredCarts = shoppingCartRepository.expireShoppingCarts(LocalDateTime.now().minusMinutes(1), tagged);
+
+        assertEquals(1, expiredCarts);
+        assertFalse(shoppingCartRepository.findShoppingCartById(oldCart).isPresent());
+        assertTrue(shoppingCartRepository.findShoppingCartById(newCart).isPresent());
+    }
+
+    private void assertNoCollectionScan(final Query query) {
+        Document explain = mongoTemplate.getCollection(collectionName())
+                .find(mappedFilter(query))
+                .explain();
+        Document winningPlan = explain.get("queryPlanner", Document.class).get("winningPlan", Document.class);
+
+        assertFalse(containsStage(winningPlan, "COLLSCAN"), () -> "Collection scan for " + query + ": " + winningPlan.toJson());
+    }
+
+    private boolean containsStage(final Object plan, final String stage) {
+        if (plan instanceof Document document) {
+            return stage.equals(document.get("stage"))
+                    || document.values().stream().anyMatch(value -> containsStage(value, stage));
+        }
+        if (plan instanceof List<?> plans) {
+            return plans.stream().anyMatch(value -> containsStage(value, stage));
+        }
+        return false;
+    }
+
+    private Document mappedFilter(final Query query) {
+        QueryMapper queryMapper = new QueryMapper(mongoTemplate.getConverter());
+        return queryMapper.getMappedObject(query.getQueryObject(),
+                mongoTemplate.getConverter().getMappingContext().getPersistentEntity(ShoppingCart.class));
+    }
+
+    private String collectionName() {
+        return mongoTemplate.getCollectionName(ShoppingCart.class);
+    }
 }
@@ -0,0 +1,234 @@
+package com.example.webshoppingservice.service;
+
+import com.example.webshoppingservice.model.IdempotencyRecord;
+import com.example.webshoppingservice.model.ShoppingCart;
+import com.example.webshoppingservice.model.ShoppingCartRequestBody;
+import com.example.webshoppingservice.repository.IdempotencyRecordRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class IdempotentShoppingCartCreatorTest {
+
+    private static final String KEY = "retry-1";
+    private static final ShoppingCartRequestBody BODY = new ShoppingCartRequestBody(List.of(UUID.randomUUID(), UUID.randomUUID()));
+    private static final Instant NOW = Instant.parse("2023-10-01T12:00:00Z");
+    private static final Duration CLAIM_TIMEOUT = Duration.ofSeconds(30);
+
+    @Mock
+    private ShoppingService shoppingService;
+    @Mock
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+    private MeterRegistry meterRegistry;
+    private IdempotencyConfig config;
+    private IdempotentShoppingCartCreator creator;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        config = new IdempotencyConfig();
+        config.setClaimTimeout(CLAIM_TIMEOUT);
+        creator = new IdempotentShoppingCartCreator(shoppingService, idempotencyRecordRepository, config, meterRegistry,
+                Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    @Test
+    void should_create_cart_with_claimed_id_and_complete_record() {
+        when(shoppingService.createShoppingCart(any(), any()))
+                .thenAnswer(invocation -> cart(invocation.getArgument(1)));
+        when(idempotencyRecordRepository.completeClaim(any(), any())).thenReturn(true);
+
+        ShoppingCart shoppingCart = creator.createShoppingCart(KEY, BODY);
+
+        ArgumentCaptor<IdempotencyRecord> claimed = ArgumentCaptor.forClass(IdempotencyRecord.class);
+        verify(idempotencyRecordRepository).insert(claimed.capture());
+        assertThat(claimed.getValue().getCartId()).isEqualTo(shoppingCart.getId());
+        assertThat(claimed.getValue().getClaimedAt()).isEqualTo(NOW);
+        verify(idempotencyRecordRepository).completeClaim(KEY, shoppingCart);
+        assertThat(meterRegistry.get("shopping.cart.idempotency").tag("result", "created").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void should_replay_stored_cart_without_reading_or_resolving_products() {
+        ShoppingCart storedCart = cart(UUID.randomUUID());
+        when(idempotencyRecordRepository.insert(any(IdempotencyRecord.class))).thenThrow(new DuplicateKeyException("duplicate"));
+        IdempotencyRecord completedRecord = new IdempotencyRecord(KEY, IdempotentShoppingCartCreator.fingerprint(BODY),
+                storedCart.getId(), true, NOW, NOW, new Document());
+        when(idempotencyRecordRepository.findById(KEY)).thenReturn(Optional.of(completedRecord));
+        when(idempotencyRecordRepository.readShoppingCart(completedRecord)).thenReturn(storedCart);
+
+        assertThat(creator.createShoppingCart(KEY, BODY)).isEqualTo(storedCart);
+        verify(shoppingService, never()).createShoppingCart(any(), any());
+        verify(shoppingService, never()).retrieveShoppingCart(any());
+        assertThat(meterRegistry.get("shopping.cart.idempotency").tag("result", "replayed").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void should_reject_key_reused_with_different_products() {
+        when(idempotencyRecordRepository.insert(any(IdempotencyRecord.class))).thenThrow(new DuplicateKeyException("duplicate"));
+        when(idempotencyRecordRepository.findById(KEY)).thenReturn(Optional.of(
+                new IdempotencyRecord(KEY, "other", UUID.randomUUID(), true, NOW, NOW, new Document())));
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> creator.createShoppingCart(KEY, BODY));
+
+        assertThat(exception.getStatusCode()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY);
+    }
+
+    @Test
+    void should_return_conflict_while_key_is_in_progress_elsewhere() {
+        Instant claimedAt = NOW.minus(CLAIM_TIMEOUT).plusSeconds(1);
+        when(idempotencyRecordRepository.insert(any(IdempotencyRecord.class))).thenThrow(new DuplicateKeyException("duplicate"));
+        when(idempotencyRecordRepository.findById(KEY)).thenReturn(Optional.of(
+                new IdempotencyRecord(KEY, IdempotentShoppingCartCreator.fingerprint(BODY), UUID.randomUUID(), false, claimedAt, claimedAt, null)));
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> creator.createShoppingCart(KEY, BODY));
+
+        assertThat(exception.getStatusCode()).isEqualTo(HttpStatus.CONFLICT);
+        verify(idempotencyRecordRepository, never()).takeOverClaim(any(), any(), any(), any());
+    }
+
+    @Test
+    void should_take_over_key_whose_claim_timed_out() {
+        UUID staleCartId = UUID.randomUUID();
+        Instant claimedAt = NOW.minus(CLAIM_TIMEOUT);
+        when(idempotencyRecordRepository.insert(any(IdempotencyRecord.class))).thenThrow(new DuplicateKeyException("duplicate"));
+        when(idempotencyRecordRepository.findById(KEY)).thenReturn(Optional.of(
+                new IdempotencyRecord(KEY, IdempotentShoppingCartCreator.fingerprint(BODY), staleCartId, false, claimedAt, claimedAt, null)));
+        when(idempotencyRecordRepository.takeOverClaim(eq(KEY), eq(staleCartId), any(), eq(NOW))).thenReturn(true);
+        when(shoppingService.createShoppingCart(any(), any()))
+                .thenAnswer(invocation -> cart(invocation.getArgument(1)));
+        when(idempotencyRecordRepository.completeClaim(any(), any())).thenReturn(true);
+
+        ShoppingCart shoppingCart = creator.createShoppingCart(KEY, BODY);
+
+        assertThat(shoppingCart.getId()).isNotEqualTo(staleCartId);
+        verify(idempotencyRecordRepository).takeOverClaim(KEY, staleCartId, shoppingCart.getId(), NOW);
+        verify(idempotencyRecordRepository).completeClaim(KEY, shoppingCart);
+        assertThat(meterRegistry.get("shopping.cart.idempotency").tag("result", "taken-over").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void should_return_conflict_when_another_request_took_over_timed_out_claim_first() {
+        Instant claimedAt = NOW.minus(CLAIM_TIMEOUT);
+        when(idempotencyRecordRepository.insert(any(IdempotencyRecord.class))).thenThrow(new DuplicateKeyException("duplicate"));
+        when(idempotencyRecordRepository.findById(KEY)).thenReturn(Optional.of(
+                new IdempotencyRecord(KEY, IdempotentShoppingCartCreator.fingerprint(BODY), UUID.randomUUID(), false, claimedAt, claimedAt, null)));
+        when(idempotencyRecordRepository.takeOverClaim(any(), any(), any(), any())).thenReturn(false);
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> creator.createShoppingCart(KEY, BODY));
+
+        assertThat(exception.getStatusCode()).isEqualTo(HttpStatus.CONFLICT);
+        verify(shoppingService, never()).createShoppingCart(any(), any());
+    }
+
+    @Test
+    void should_return_created_cart_when_record_cannot_be_completed() {
+        when(shoppingService.createShoppingCart(any(), any()))
+                .thenAnswer(invocation -> cart(invocation.getArgument(1)));
+        when(idempotencyRecordRepository.completeClaim(any(), any())).thenThrow(new DataAccessResourceFailureException("timeout"));
+
+        ShoppingCart shoppingCart = creator.createShoppingCart(KEY, BODY);
+
+        assertThat(shoppingCart).isNotNull();
+        verify(idempotencyRecordRepository, never()).releaseClaim(any(), any());
+    }
+
+    @Test
+    void should_release_key_when_creation_fails() {
+        when(shoppingService.createShoppingCart(any(), any()))
+                .thenThrow(new ResponseStatusException(HttpStatus.NOT_FOUND, "No available products found"));
+
+        assertThrows(ResponseStatusException.class, () -> creator.createShoppingCart(KEY, BODY));
+
+        ArgumentCaptor<IdempotencyRecord> claimed = ArgumentCaptor.forClass(IdempotencyRecord.class);
+        verify(idempotencyRecordRepository).insert(claimed.capture());
+        verify(idempotencyRecordRepository).releaseClaim(KEY, claimed.getValue().getCartId());
+        verify(idempotencyRecordRepository, never()).completeClaim(any(), any());
+    }
+
+    @Test
+    void should_attach_duplicate_to_in_flight_creation() throws Exception {
+        CountDownLatch creating = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(shoppingService.createShoppingCart(any(), any())).thenAnswer(invocation -> {
+            creating.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return cart(invocation.getArgument(1));
+        });
+
+        CompletableFuture<ShoppingCart> first = CompletableFuture.supplyAsync(() -> creator.createShoppingCart(KEY, BODY));
+        assertThat(creating.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<ShoppingCart> duplicate = CompletableFuture.supplyAsync(() -> creator.createShoppingCart(KEY,
+                new ShoppingCartRequestBody(List.of(BODY.products().get(1), BODY.products().get(0)))));
+        while (meterRegistry.get("shopping.cart.idempotency").tag("result", "attached").counter().count() == 0) {
+            Thread.onSpinWait();
+        }
+        release.countDown();
+
+        assertThat(duplicate.get(5, TimeUnit.SECONDS)).isSameAs(first.get(5, TimeUnit.SECONDS));
+        verify(shoppingService, times(1)).createShoppingCart(any(), any());
+        verify(idempotencyRecordRepository, times(1)).insert(any(IdempotencyRecord.class));
+    }
+
+    @Test
+    void should_return_conflict_when_in_flight_creation_takes_too_long() throws Exception {
+        config.setInFlightMaxWait(Duration.ofMillis(50));
+        CountDownLatch creating = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(shoppingService.createShoppingCart(any(), any())).thenAnswer(invocation -> {
+            creating.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return cart(invocation.getArgument(1));
+        });
+
+        CompletableFuture<ShoppingCart> first = CompletableFuture.supplyAsync(() -> creator.createShoppingCart(KEY, BODY));
+        assertThat(creating.await(5, TimeUnit.SECONDS)).isTrue();
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> creator.createShoppingCart(KEY, BODY));
+        release.countDown();
+
+        assertThat(exception.getStatusCode()).isEqualTo(HttpStatus.CONFLICT);
+        assertThat(first.get(5, TimeUnit.SECONDS)).isNotNull();
+        verify(shoppingService, times(1)).createShoppingCart(any(), any());
+    }
+
+    @Test
+    void should_reject_overlong_key() {
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> creator.createShoppingCart("k".repeat(IdempotentShoppingCartCreator.MAX_KEY_LENGTH + 1), BODY));
+
+        assertThat(exception.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        verifyNoInteractions(idempotencyRecordRepository);
+    }
+
+    private static ShoppingCart cart(final UUID cartId) {
+        return new ShoppingCart(cartId, List.of(), LocalDateTime.now(), 0L);
+    }
+}
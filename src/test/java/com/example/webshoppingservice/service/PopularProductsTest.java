@@ -0,0 +1,195 @@
+package com.example.webshoppingservice.service;
+
+import com.example.webshoppingservice.model.PopularProduct;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PopularProductsTest {
+
+    private static final int PRODUCTS = 20_000;
+    private static final int EVENTS = 200_000;
+
+    private MutableClock clock;
+    private PopularProductsConfig config;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void setUp() {
+        clock = new MutableClock(Instant.parse("2023-10-19T19:00:00Z"));
+        config = new PopularProductsConfig();
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void should_rank_like_exact_counts_on_skewed_traffic() {
+        PopularProducts popularProducts = new PopularProducts(config, meterRegistry, clock);
+        List<UUID> products = IntStream.range(0, PRODUCTS).mapToObj(i -> UUID.randomUUID()).toList();
+        double[] cumulativeWeights = zipfCumulativeWeights(PRODUCTS, 1.1);
+        Random random = new Random(42);
+        Map<UUID, Long> exactCounts = new HashMap<>();
+
+        for (int i = 0; i < EVENTS; i++) {
+            UUID product = products.get(sample(cumulativeWeights, random));
+            popularProducts.recordAdded(List.of(product));
+            exactCounts.merge(product, 1L, Long::sum);
+        }
+
+        List<PopularProduct> top = popularProducts.topProducts();
+        Set<UUID> exactTop = exactCounts.entrySet().stream()
+                .sorted(Map.Entry.<UUID, Long>comparingByValue().reversed())
+                .limit(config.getTopK())
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toSet());
+        long errorBound = (long) Math.ceil(Math.E / config.getWidth() * EVENTS);
+
+        assertThat(top).hasSize(config.getTopK());
+        assertThat(top).isSortedAccordingTo(Comparator.comparingLong(PopularProduct::count).reversed());
+        assertThat(top).filteredOn(product -> exactTop.contains(product.productId())).hasSizeGreaterThanOrEqualTo(config.getTopK() - 1);
+        assertThat(top).allSatisfy(product -> assertThat(product.count())
+                .isBetween(exactCounts.get(product.productId()), exactCounts.get(product.productId()) + errorBound));
+    }
+
+    @Test
+    void should_subtract_removed_products() {
+        PopularProducts popularProducts = new PopularProducts(config, meterRegistry, clock);
+        UUID product = UUID.randomUUID();
+
+        popularProducts.recordAdded(List.of(product, product, product));
+        popularProducts.recordRemoved(List.of(product));
+
+        assertThat(popularProducts.topProducts()).containsExactly(new PopularProduct(product, 2));
+    }
+
+    @Test
+    void should_forget_products_once_they_leave_the_window() {
+        PopularProducts popularProducts = new PopularProducts(config, meterRegistry, clock);
+        UUID oldProduct = UUID.randomUUID();
+        UUID recentProduct = UUID.randomUUID();
+
+        popularProducts.recordAdded(List.of(oldProduct, oldProduct));
+        clock.advance(config.getWindow().minusMinutes(2));
+        popularProducts.recordAdded(List.of(recentProduct));
+        assertThat(popularProducts.topProducts()).extracting(PopularProduct::productId).containsExactly(oldProduct, recentProduct);
+
+        clock.advance(Duration.ofMinutes(2));
+        assertThat(popularProducts.topProducts()).containsExactly(new PopularProduct(recentProduct, 1));
+    }
+
+    @Test
+    void should_not_lose_concurrent_updates() throws Exception {
+        PopularProducts popularProducts = new PopularProducts(config, meterRegistry, clock);
+        List<UUID> products = IntStream.range(0, 4).mapToObj(i -> UUID.randomUUID()).toList();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                writers.add(executor.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        popularProducts.recordAdded(products);
+                    }
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(popularProducts.topProducts())
+                .hasSize(products.size())
+                .allSatisfy(product -> assertThat(product.count()).isEqualTo(80_000));
+    }
+
+    @Test
+    void should_bound_tracked_candidates() {
+        PopularProducts popularProducts = new PopularProducts(config, meterRegistry, clock);
+
+        for (int i = 0; i < 10_000; i++) {
+            popularProducts.recordAdded(List.of(UUID.randomUUID()));
+        }
+
+        assertThat(popularProducts.trackedCandidates()).isLessThanOrEqualTo(2 * config.getCandidates() + 1);
+    }
+
+    @Test
+    void should_expose_top_products_as_gauges() {
+        PopularProducts popularProducts = new PopularProducts(config, meterRegistry, clock);
+        UUID product = UUID.randomUUID();
+        popularProducts.recordAdded(List.of(product, product));
+
+        popularProducts.refreshGauges();
+
+        assertThat(meterRegistry.get("shopping.products.popular").tag("rank", "1").tag("productId", product.toString()).gauge().value())
+                .isEqualTo(2);
+    }
+
+    private static double[] zipfCumulativeWeights(final int size, final double exponent) {
+        double[] cumulative = new double[size];
+        double sum = 0;
+        for (int rank = 0; rank < size; rank++) {
+            sum += 1 / Math.pow(rank + 1, exponent);
+            cumulative[rank] = sum;
+        }
+        for (int rank = 0; rank < size; rank++) {
+            cumulative[rank] /= sum;
+        }
+        return cumulative;
+    }
+
+    private static int sample(final double[] cumulativeWeights, final Random random) {
+        int index = Arrays.binarySearch(cumulativeWeights, random.nextDouble());
+        return Math.min(index >= 0 ? index : -index - 1, cumulativeWeights.length - 1);
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant instant;
+
+        private MutableClock(final Instant instant) {
+            this.instant = instant;
+        }
+
+        void advance(final Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(final ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package com.example.webshoppingservice.service;
+
+import com.example.webshoppingservice.ProductDataProvider;
+import com.example.webshoppingservice.config.MongoConfig;
+import com.example.webshoppingservice.model.CartEvent;
+import com.example.webshoppingservice.model.CartEventType;
+import com.example.webshoppingservice.model.ChangeStreamResumeToken;
+import com.example.webshoppingservice.model.Product;
+import com.example.webshoppingservice.model.ShoppingCart;
+import com.example.webshoppingservice.repository.ChangeStreamResumeTokenRepository;
+import com.example.webshoppingservice.repository.ShoppingCartRepositoryCustom;
+import com.mongodb.MongoCommandException;
+import com.mongodb.ServerAddress;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.UpdateDescription;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonBinary;
+import org.bson.BsonDateTime;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import org.bson.BsonTimestamp;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.messaging.ChangeStreamRequest;
+import org.springframework.data.mongodb.core.messaging.MessageListenerContainer;
+import org.springframework.data.mongodb.core.messaging.Subscription;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ShoppingCartChangeStreamTailerTest {
+
+    private static final Instant NOW = Instant.parse("2023-10-19T19:00:00Z");
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+    @Mock
+    private ChangeStreamResumeTokenRepository resumeTokenRepository;
+    @Mock
+    private CartEventSink cartEventSink;
+    @Mock
+    private MessageListenerContainer container;
+    private MappingMongoConverter converter;
+    private CartEventsConfig config;
+    private ShoppingCartChangeStreamTailer tailer;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        converter = converter(new MongoConfig().mongoCustomConversions());
+        when(mongoTemplate.getConverter()).thenReturn(converter);
+        when(mongoTemplate.getCollectionName(ShoppingCart.class)).thenReturn("shoppingCarts");
+        config = new CartEventsConfig();
+        config.setInstanceId("pod-1");
+        tailer = new ShoppingCartChangeStreamTailer(mongoTemplate, resumeTokenRepository, List.of(cartEventSink),
+                config, new SimpleMeterRegistry(), Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        tailer.stop();
+    }
+
+    @Test
+    void should_publish_created_event_for_insert() {
+        ShoppingCart cart = cart(LocalDateTime.now(), ProductDataProvider.getSimpleProduct());
+
+        List<CartEvent> events = tailer.toEvents(change("insert", null, cart, cart.getId()));
+
+        assertThat(events).containsExactly(new CartEvent(CartEventType.CREATED, cart.getId(), productIds(cart), NOW));
+    }
+
+    @Test
+    void should_publish_added_and_removed_products_for_update() {
+        Product kept = ProductDataProvider.getSimpleProduct();
+        Product removed = ProductDataProvider.getSimpleProduct();
+        Product added = ProductDataProvider.getSimpleProduct();
+        ShoppingCart before = cart(LocalDateTime.now(), kept, removed);
+        ShoppingCart after = new ShoppingCart(before.getId(), List.of(kept, added), before.getInsertDateTime(), 1L);
+
+        List<CartEvent> events = tailer.toEvents(change("update", before, after, before.getId()));
+
+        assertThat(events).containsExactly(
+                new CartEvent(CartEventType.PRODUCTS_ADDED, before.getId(), List.of(added.getId()), NOW),
+                new CartEvent(CartEventType.PRODUCTS_REMOVED, before.getId(), List.of(removed.getId()), NOW));
+    }
+
+    @Test
+    void should_publish_nothing_for_price_only_update() {
+        Product product = ProductDataProvider.getSimpleProduct();
+        ShoppingCart before = cart(LocalDateTime.now(), product);
+        ShoppingCart after = cart(before.getInsertDateTime(), product);
+        after.setId(before.getId());
+
+        assertThat(tailer.toEvents(change("update", before, after, before.getId()))).isEmpty();
+    }
+
+    @Test
+    void should_publish_updated_event_without_pre_image() {
+        ShoppingCart after = cart(LocalDateTime.now(), ProductDataProvider.getSimpleProduct());
+
+        List<CartEvent> events = tailer.toEvents(change("update", null, after, after.getId()));
+
+        assertThat(events).containsExactly(new CartEvent(CartEventType.UPDATED, after.getId(), productIds(after), NOW));
+    }
+
+    @Test
+    void should_tell_expired_carts_from_deleted_ones() {
+        LocalDateTime longAgo = LocalDateTime.ofInstant(NOW, ZoneId.systemDefault()).minusHours(1);
+        ShoppingCart expiredCart = cart(longAgo, ProductDataProvider.getSimpleProduct());
+        ShoppingCart deletedCart = cart(longAgo, ProductDataProvider.getSimpleProduct());
+        ChangeStreamDocument<Document> expiry = change("delete", expiredCart, null, expiredCart.getId());
+        expiry.getFullDocumentBeforeChange().put(ShoppingCartRepositoryCustom.EXPIRED_AT, NOW);
+
+        assertThat(tailer.toEvents(expiry))
+                .extracting(CartEvent::type)
+                .containsExactly(CartEventType.EXPIRED);
+        assertThat(tailer.toEvents(change("delete", deletedCart, null, deletedCart.getId())))
+                .containsExactly(new CartEvent(CartEventType.DELETED, deletedCart.getId(), productIds(deletedCart), NOW));
+    }
+
+    @Test
+    void should_publish_nothing_for_expiry_tag() {
+        ShoppingCart cart = cart(LocalDateTime.now(), ProductDataProvider.getSimpleProduct());
+        UpdateDescription expiryTag = new UpdateDescription(List.of(),
+                new BsonDocument(ShoppingCartRepositoryCustom.EXPIRED_AT, new BsonDateTime(NOW.toEpochMilli())));
+
+        assertThat(tailer.toEvents(change("update", null, cart, cart.getId(), expiryTag))).isEmpty();
+    }
+
+    @Test
+    void should_publish_delete_without_pre_image() {
+        UUID cartId = UUID.randomUUID();
+
+        assertThat(tailer.toEvents(change("delete", null, null, cartId)))
+                .containsExactly(new CartEvent(CartEventType.DELETED, cartId, List.of(), NOW));
+    }
+
+    @Test
+    void should_store_resume_token_after_publishing() {
+        config.setCheckpointEvery(1);
+        ShoppingCart cart = cart(LocalDateTime.now(), ProductDataProvider.getSimpleProduct());
+        ChangeStreamDocument<Document> change = change("insert", null, cart, cart.getId());
+
+        tailer.onChange(change);
+
+        InOrder inOrder = inOrder(cartEventSink, resumeTokenRepository);
+        inOrder.verify(cartEventSink).publish(any());
+        ArgumentCaptor<ChangeStreamResumeToken> resumeToken = ArgumentCaptor.forClass(ChangeStreamResumeToken.class);
+        inOrder.verify(resumeTokenRepository).save(resumeToken.capture());
+        assertThat(resumeToken.getValue().getId()).isEqualTo("pod-1");
+        assertThat(BsonDocument.parse(resumeToken.getValue().getToken())).isEqualTo(change.getResumeToken());
+    }
+
+    @Test
+    void should_store_resume_token_when_sink_fails() {
+        config.setCheckpointEvery(1);
+        ShoppingCart cart = cart(LocalDateTime.now(), ProductDataProvider.getSimpleProduct());
+        doThrow(new IllegalStateException("sink down")).when(cartEventSink).publish(any());
+
+        tailer.onChange(change("insert", null, cart, cart.getId()));
+
+        verify(resumeTokenRepository).save(any());
+    }
+
+    @Test
+    void should_store_resume_token_every_n_changes() {
+        config.setCheckpointEvery(3);
+        List<ChangeStreamDocument<Document>> changes = IntStream.range(0, 5)
+                .mapToObj(i -> cart(LocalDateTime.now(), ProductDataProvider.getSimpleProduct()))
+                .map(cart -> change("insert", null, cart, cart.getId()))
+                .toList();
+
+        changes.forEach(tailer::onChange);
+
+        ArgumentCaptor<ChangeStreamResumeToken> resumeToken = ArgumentCaptor.forClass(ChangeStreamResumeToken.class);
+        verify(resumeTokenRepository, times(1)).save(resumeToken.capture());
+        assertThat(BsonDocument.parse(resumeToken.getValue().getToken())).isEqualTo(changes.get(2).getResumeToken());
+    }
+
+    @Test
+    void should_store_resume_token_once_interval_elapsed() {
+        config.setCheckpointInterval(Duration.ZERO);
+        ShoppingCart cart = cart(LocalDateTime.now(), ProductDataProvider.getSimpleProduct());
+
+        tailer.onChange(change("insert", null, cart, cart.getId()));
+
+        verify(resumeTokenRepository).save(any());
+    }
+
+    @Test
+    void should_store_last_resume_token_on_stop() {
+        ShoppingCart cart = cart(LocalDateTime.now(), ProductDataProvider.getSimpleProduct());
+        ChangeStreamDocument<Document> change = change("insert", null, cart, cart.getId());
+        tailer.onChange(change);
+        verify(resumeTokenRepository, never()).save(any());
+
+        tailer.stop();
+
+        ArgumentCaptor<ChangeStreamResumeToken> resumeToken = ArgumentCaptor.forClass(ChangeStreamResumeToken.class);
+        verify(resumeTokenRepository).save(resumeToken.capture());
+        assertThat(BsonDocument.parse(resumeToken.getValue().getToken())).isEqualTo(change.getResumeToken());
+    }
+
+    @Test
+    void should_reopen_failed_stream_after_last_handled_change() {
+        config.setRestartBackoff(Duration.ofMillis(1));
+        Subscription subscription = mock(Subscription.class);
+        when(container.register(any(), eq(Document.class), any())).thenReturn(subscription);
+        ShoppingCart cart = cart(LocalDateTime.now(), ProductDataProvider.getSimpleProduct());
+        ChangeStreamDocument<Document> change = change("insert", null, cart, cart.getId());
+
+        tailer.start(container);
+        tailer.onChange(change);
+        tailer.onStreamError(new DataAccessResourceFailureException("connection reset"));
+
+        assertThat(resumeTokens(2).get(1)).isEqualTo(change.getResumeToken());
+    }
+
+    @Test
+    void should_reopen_stream_from_now_when_resume_token_is_gone() {
+        config.setRestartBackoff(Duration.ofMillis(1));
+        when(resumeTokenRepository.findById("pod-1")).thenReturn(Optional.of(
+                new ChangeStreamResumeToken("pod-1", new BsonDocument("_data", new BsonString("old")).toJson(), NOW)));
+        when(container.register(any(), eq(Document.class), any())).thenReturn(mock(Subscription.class));
+
+        tailer.start(container);
+        tailer.onStreamError(new DataAccessResourceFailureException("history lost",
+                new MongoCommandException(new BsonDocument("code", new BsonInt32(286)), new ServerAddress())));
+
+        List<BsonValue> resumeTokens = resumeTokens(2);
+        assertThat(resumeTokens.get(0)).isEqualTo(new BsonDocument("_data", new BsonString("old")));
+        assertThat(resumeTokens.get(1)).isNull();
+    }
+
+    @Test
+    void should_keep_stream_open_when_only_listener_failed() {
+        Subscription subscription = mock(Subscription.class);
+        when(subscription.isActive()).thenReturn(true);
+        when(container.register(any(), eq(Document.class), any())).thenReturn(subscription);
+
+        tailer.start(container);
+        tailer.onStreamError(new IllegalStateException("listener failed"));
+
+        verify(container, after(100).times(1)).register(any(), eq(Document.class), any());
+        verify(container, never()).remove(any());
+    }
+
+    /**
+     * Resume tokens of the stream requests registered so far, waiting for the expected number of registrations.
+     */
+    @SuppressWarnings("unchecked")
+    private List<BsonValue> resumeTokens(final int registrations) {
+        ArgumentCaptor<ChangeStreamRequest<Document>> requests = ArgumentCaptor.forClass(ChangeStreamRequest.class);
+        verify(container, timeout(5000).times(registrations)).register(requests.capture(), eq(Document.class), any());
+        return requests.getAllValues().stream()
+                .map(request -> request.getRequestOptions().getChangeStreamOptions().getResumeToken().orElse(null))
+                .toList();
+    }
+
+    private ChangeStreamDocument<Document> change(final String operationType,
+                                                  final ShoppingCart before,
+                                                  final ShoppingCart after,
+                                                  final UUID cartId) {
+        return change(operationType, before, after, cartId, null);
+    }
+
+    private ChangeStreamDocument<Document> change(final String operationType,
+                                                  final ShoppingCart before,
+                                                  final ShoppingCart after,
+                                                  final UUID cartId,
+                                                  final UpdateDescription updateDescription) {
+        return new ChangeStreamDocument<>(operationType,
+                new BsonDocument("_data", new BsonString(UUID.randomUUID().toString())),
+                new BsonDocument("db", new BsonString("shopping")).append("coll", new BsonString("shoppingCarts")),
+                null,
+                write(after),
+                write(before),
+                new BsonDocument("_id", new BsonBinary(cartId)),
+                new BsonTimestamp((int) NOW.getEpochSecond(), 1),
+                updateDescription, null, null, null, null);
+    }
+
+    private Document write(final ShoppingCart cart) {
+        if (cart == null) {
+            return null;
+        }
+        Document document = new Document();
+        converter.write(cart, document);
+        return document;
+    }
+
+    private static ShoppingCart cart(final LocalDateTime insertDateTime, final Product... products) {
+        return new ShoppingCart(UUID.randomUUID(), List.of(products), insertDateTime.withNano(0), 0L);
+    }
+
+    private static List<UUID> productIds(final ShoppingCart cart) {
+        return cart.getProducts().stream().map(Product::getId).toList();
+    }
+
+    private static MappingMongoConverter converter(final MongoCustomConversions conversions) {
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        mappingContext.afterPropertiesSet();
+
+        MappingMongoConverter mongoConverter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        mongoConverter.setCustomConversions(conversions);
+        mongoConverter.afterPropertiesSet();
+        return mongoConverter;
+    }
+}
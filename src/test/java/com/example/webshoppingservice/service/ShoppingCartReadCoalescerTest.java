@@ -0,0 +1,147 @@
+package com.example.webshoppingservice.service;
+
+import com.example.webshoppingservice.model.ShoppingCart;
+import com.example.webshoppingservice.repository.ShoppingCartRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ShoppingCartReadCoalescerTest {
+
+    private static final int CALLERS = 50;
+
+    @Mock
+    private ShoppingCartRepository shoppingCartRepository;
+    private MeterRegistry meterRegistry;
+    private ShoppingCartReadConfig config;
+    private ShoppingCartReadCoalescer readCoalescer;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        config = new ShoppingCartReadConfig();
+        config.setCoalescingMaxWait(Duration.ofSeconds(5));
+        readCoalescer = new ShoppingCartReadCoalescer(shoppingCartRepository, config, new ShoppingMetrics(meterRegistry), meterRegistry);
+    }
+
+    @Test
+    void should_merge_concurrent_reads_of_same_cart() throws Exception {
+        UUID cartId = UUID.randomUUID();
+        ShoppingCart shoppingCart = new ShoppingCart(cartId, Collections.emptyList(), LocalDateTime.now());
+        CountDownLatch readStarted = new CountDownLatch(1);
+        CountDownLatch releaseRead = new CountDownLatch(1);
+        when(shoppingCartRepository.findShoppingCartById(cartId)).thenAnswer(invocation -> {
+            readStarted.countDown();
+            releaseRead.await(5, TimeUnit.SECONDS);
+            return Optional.of(shoppingCart);
+        });
+
+        List<Thread> callers = new CopyOnWriteArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS, runnable -> {
+            Thread thread = new Thread(runnable);
+            callers.add(thread);
+            return thread;
+        });
+        try {
+            List<Future<Optional<ShoppingCart>>> results = new ArrayList<>();
+            results.add(executor.submit(() -> readCoalescer.findShoppingCartById(cartId)));
+            assertThat(readStarted.await(5, TimeUnit.SECONDS)).isTrue();
+            for (int i = 1; i < CALLERS; i++) {
+                results.add(executor.submit(() -> readCoalescer.findShoppingCartById(cartId)));
+            }
+            waitUntilBlocked(callers, CALLERS);
+            releaseRead.countDown();
+
+            for (Future<Optional<ShoppingCart>> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS)).contains(shoppingCart);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        verify(shoppingCartRepository, times(1)).findShoppingCartById(cartId);
+        assertThat(readCount("repository")).isEqualTo(1);
+        assertThat(readCount("coalesced")).isEqualTo(CALLERS - 1);
+    }
+
+    @Test
+    void should_read_again_once_previous_read_completed() {
+        UUID cartId = UUID.randomUUID();
+        when(shoppingCartRepository.findShoppingCartById(cartId)).thenReturn(Optional.empty());
+
+        readCoalescer.findShoppingCartById(cartId);
+        readCoalescer.findShoppingCartById(cartId);
+
+        verify(shoppingCartRepository, times(2)).findShoppingCartById(cartId);
+    }
+
+    @Test
+    void should_read_on_its_own_when_wait_times_out() throws Exception {
+        UUID cartId = UUID.randomUUID();
+        ShoppingCart shoppingCart = new ShoppingCart(cartId, Collections.emptyList(), LocalDateTime.now());
+        CountDownLatch readStarted = new CountDownLatch(1);
+        CountDownLatch releaseRead = new CountDownLatch(1);
+        when(shoppingCartRepository.findShoppingCartById(cartId))
+                .thenAnswer(invocation -> {
+                    readStarted.countDown();
+                    releaseRead.await(5, TimeUnit.SECONDS);
+                    return Optional.of(shoppingCart);
+                })
+                .thenReturn(Optional.of(shoppingCart));
+        config.setCoalescingMaxWait(Duration.ofMillis(10));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Optional<ShoppingCart>> slowRead = executor.submit(() -> readCoalescer.findShoppingCartById(cartId));
+            assertThat(readStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+            assertThat(readCoalescer.findShoppingCartById(cartId)).contains(shoppingCart);
+
+            releaseRead.countDown();
+            assertThat(slowRead.get(5, TimeUnit.SECONDS)).contains(shoppingCart);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        verify(shoppingCartRepository, times(2)).findShoppingCartById(any());
+        assertThat(readCount("wait-timeout")).isEqualTo(1);
+        assertThat(readCount("coalesced")).isZero();
+    }
+
+    /**
+     * Waits until every caller is parked, either in the repository read or waiting for it.
+     */
+    private void waitUntilBlocked(final List<Thread> callers, final int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (callers.stream().filter(thread -> thread.getState() == Thread.State.TIMED_WAITING).count() < expected
+                && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    private double readCount(final String result) {
+        return meterRegistry.get("shopping.cart.reads").tag("result", result).counter().count();
+    }
+}
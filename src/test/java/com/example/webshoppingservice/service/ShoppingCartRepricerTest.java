@@ -0,0 +1,115 @@
+package com.example.webshoppingservice.service;
+
+import com.example.webshoppingservice.ProductDataProvider;
+import com.example.webshoppingservice.model.Product;
+import com.example.webshoppingservice.repository.ShoppingCartRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ShoppingCartRepricerTest {
+
+    @Mock
+    private ShoppingCartRepository shoppingCartRepository;
+    private MeterRegistry meterRegistry;
+    private ShoppingCartRepricingConfig config;
+    private ShoppingCartRepricer repricer;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        config = new ShoppingCartRepricingConfig();
+        repricer = new ShoppingCartRepricer(shoppingCartRepository, config, meterRegistry);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        repricer.shutdown();
+    }
+
+    @Test
+    void should_only_record_prices_of_first_catalog() {
+        repricer.reprice(List.of(ProductDataProvider.getSimpleProduct()));
+
+        verifyNoInteractions(shoppingCartRepository);
+    }
+
+    @Test
+    void should_write_only_changed_prices() {
+        Product unchanged = ProductDataProvider.getSimpleProduct();
+        Product changed = ProductDataProvider.getSimpleProduct();
+        when(shoppingCartRepository.repriceProducts(any())).thenReturn(3L);
+
+        repricer.reprice(List.of(unchanged, changed));
+        repricer.reprice(List.of(withPrice(unchanged, new BigDecimal("10.00")), withPrice(changed, new BigDecimal("12.50"))));
+
+        verify(shoppingCartRepository).repriceProducts(Map.of(changed.getId(), new BigDecimal("12.50")));
+        assertThat(meterRegistry.get("shopping.cart.repricing.products").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("shopping.cart.repricing.carts").counter().count()).isEqualTo(3);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void should_split_changes_into_batches() {
+        config.setBatchSize(10);
+        List<Product> catalog = IntStream.range(0, 25).mapToObj(i -> ProductDataProvider.getSimpleProduct()).toList();
+
+        repricer.reprice(catalog);
+        repricer.reprice(catalog.stream().map(product -> withPrice(product, BigDecimal.ONE)).toList());
+
+        ArgumentCaptor<Map<UUID, BigDecimal>> batches = ArgumentCaptor.forClass(Map.class);
+        verify(shoppingCartRepository, times(3)).repriceProducts(batches.capture());
+        assertThat(batches.getAllValues()).extracting(Map::size).containsExactlyInAnyOrder(10, 10, 5);
+        assertThat(meterRegistry.get("shopping.cart.repricing.pending-batches").gauge().value()).isZero();
+    }
+
+    @Test
+    void should_retry_failed_prices_with_next_catalog() {
+        Product product = ProductDataProvider.getSimpleProduct();
+        Product repriced = withPrice(product, new BigDecimal("12.50"));
+        when(shoppingCartRepository.repriceProducts(any()))
+                .thenThrow(new DataAccessResourceFailureException("down"))
+                .thenReturn(1L);
+
+        repricer.reprice(List.of(product));
+        repricer.reprice(List.of(repriced));
+        repricer.reprice(List.of(repriced));
+
+        verify(shoppingCartRepository, times(2)).repriceProducts(Map.of(product.getId(), new BigDecimal("12.50")));
+        assertThat(meterRegistry.get("shopping.cart.repricing.batch").tag("result", "failure").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("shopping.cart.repricing.batch").tag("result", "success").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void should_ignore_catalog_refresh_when_disabled() throws InterruptedException {
+        config.setEnabled(false);
+        Product product = ProductDataProvider.getSimpleProduct();
+
+        repricer.onCatalogRefresh(List.of(product));
+        repricer.onCatalogRefresh(List.of(withPrice(product, BigDecimal.ONE)));
+        Thread.sleep(100);
+
+        verifyNoInteractions(shoppingCartRepository);
+    }
+
+    private static Product withPrice(final Product product, final BigDecimal price) {
+        return Product.builder().id(product.getId()).name(product.getName()).price(price).build();
+    }
+}
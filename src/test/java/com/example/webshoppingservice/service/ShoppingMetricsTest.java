@@ -0,0 +1,61 @@
+package com.example.webshoppingservice.service;
+
+import com.example.webshoppingservice.model.ShoppingCart;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static com.example.webshoppingservice.ProductDataProvider.getSimpleProduct;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ShoppingMetricsTest {
+
+    private MeterRegistry meterRegistry;
+    private ShoppingMetrics shoppingMetrics;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        shoppingMetrics = new ShoppingMetrics(meterRegistry);
+    }
+
+    @Test
+    void should_time_repository_reads_and_writes_separately() {
+        UUID cartId = UUID.randomUUID();
+
+        assertThat(shoppingMetrics.recordRepositoryRead(cartId, () -> "cart")).isEqualTo("cart");
+        shoppingMetrics.recordRepositoryWrite(cartId, () -> "saved");
+        shoppingMetrics.recordRepositoryWrite(cartId, () -> { });
+
+        assertThat(meterRegistry.get("shopping.cart.repository").tag("operation", "read").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("shopping.cart.repository").tag("operation", "write").timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    void should_time_failed_repository_calls() {
+        IllegalStateException error = new IllegalStateException("mongo down");
+
+        assertThrows(IllegalStateException.class, () -> shoppingMetrics.recordRepositoryRead(UUID.randomUUID(), () -> {
+            throw error;
+        }));
+
+        assertThat(meterRegistry.get("shopping.cart.repository").tag("operation", "read").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void should_record_cart_size() {
+        shoppingMetrics.recordCartSize(new ShoppingCart(UUID.randomUUID(), List.of(getSimpleProduct(), getSimpleProduct()), LocalDateTime.now()));
+        shoppingMetrics.recordCartSize(new ShoppingCart(UUID.randomUUID(), Collections.emptyList(), LocalDateTime.now()));
+        shoppingMetrics.recordCartSize(new ShoppingCart(UUID.randomUUID(), null, LocalDateTime.now()));
+
+        assertThat(meterRegistry.get("shopping.cart.size").summary().count()).isEqualTo(3);
+        assertThat(meterRegistry.get("shopping.cart.size").summary().totalAmount()).isEqualTo(2);
+    }
+}
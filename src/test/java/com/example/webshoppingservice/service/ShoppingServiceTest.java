@@ -1,17 +1,31 @@
 package com.example.webshoppingservice.service;
 
 import com.example.webshoppingservice.ProductDataProvider;
+import com.example.webshoppingservice.client.KnownProductIds;
+import com.example.webshoppingservice.client.KnownProductIdsConfig;
+import com.example.webshoppingservice.client.LocalProductCatalog;
 import com.example.webshoppingservice.client.ProductClient;
+import com.example.webshoppingservice.client.ProductResolver;
+import com.example.webshoppingservice.client.ProductResolverConfig;
 import com.example.webshoppingservice.model.*;
 import com.example.webshoppingservice.repository.ShoppingCartRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
 
@@ -19,6 +33,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.Mockito.*;
 
 class ShoppingServiceTest {
@@ -52,12 +67,33 @@ class ShoppingServiceTest {
     private ShoppingCartRepository shoppingCartRepository;
     @Mock
     private ProductClient productClient;
+    @Mock
+    private LocalProductCatalog localProductCatalog;
+    private KnownProductIds knownProductIds;
+    private ProductResolver productResolver;
+    private PopularProducts popularProducts;
+    private CartEventsConfig cartEventsConfig;
     private ShoppingService shoppingService;
 
     @BeforeEach
     public void setUp() {
         MockitoAnnotations.openMocks(this);
-        shoppingService = new ShoppingService(shoppingCartRepository, productClient);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ShoppingMetrics shoppingMetrics = new ShoppingMetrics(meterRegistry);
+        ShoppingCartReadCoalescer readCoalescer = new ShoppingCartReadCoalescer(shoppingCartRepository, new ShoppingCartReadConfig(), shoppingMetrics, meterRegistry);
+        ProductResolverConfig productResolverConfig = new ProductResolverConfig();
+        productResolverConfig.setWindow(Duration.ofMillis(1));
+        knownProductIds = new KnownProductIds(new KnownProductIdsConfig(), meterRegistry);
+        productResolver = new ProductResolver(productClient, productResolverConfig, localProductCatalog, List.of(knownProductIds), meterRegistry);
+        popularProducts = new PopularProducts(new PopularProductsConfig(), meterRegistry);
+        cartEventsConfig = new CartEventsConfig();
+        shoppingService = new ShoppingService(shoppingCartRepository, productResolver, knownProductIds, readCoalescer, shoppingMetrics, popularProducts,
+                cartEventsConfig);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        productResolver.shutdown();
     }
 
     @Test
@@ -81,6 +117,51 @@ class ShoppingServiceTest {
         assertThat(exception.getReason()).isEqualTo("Shopping cart not found");
     }
 
+    @Test
+    void should_return_cart_page() {
+        UUID cartId = UUID.randomUUID();
+        ShoppingCartPage page = new ShoppingCartPage(SHOPPING_CART, 5);
+        when(shoppingCartRepository.findShoppingCartPage(cartId, 2, 1, List.of("name"))).thenReturn(Optional.of(page));
+
+        assertThat(shoppingService.retrieveShoppingCartPage(cartId, 2, 1, List.of("name"))).isEqualTo(page);
+    }
+
+    @Test
+    void should_return_not_found_for_page_of_non_existing_cart() {
+        when(shoppingCartRepository.findShoppingCartPage(any(), anyInt(), any(), any())).thenReturn(Optional.empty());
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () ->
+                shoppingService.retrieveShoppingCartPage(UUID.randomUUID(), 0, 10, List.of())
+        );
+        assertThat(exception.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    @Test
+    void should_return_bad_request_for_unknown_product_field() {
+        when(shoppingCartRepository.findShoppingCartPage(any(), anyInt(), any(), any()))
+                .thenThrow(new IllegalArgumentException("Unknown product field: colour"));
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () ->
+                shoppingService.retrieveShoppingCartPage(UUID.randomUUID(), 0, 10, List.of("colour"))
+        );
+        assertThat(exception.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(exception.getReason()).isEqualTo("Unknown product field: colour");
+    }
+
+    @Test
+    void should_return_bad_request_for_invalid_page_bounds() {
+        UUID cartId = UUID.randomUUID();
+
+        assertThat(assertThrows(ResponseStatusException.class, () -> shoppingService.retrieveShoppingCartPage(cartId, -1, 10, List.of()))
+                .getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(assertThrows(ResponseStatusException.class, () -> shoppingService.retrieveShoppingCartPage(cartId, 0, 0, List.of()))
+                .getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(assertThrows(ResponseStatusException.class,
+                () -> shoppingService.retrieveShoppingCartPage(cartId, 0, ShoppingService.MAX_PAGE_SIZE + 1, List.of()))
+                .getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        verifyNoInteractions(shoppingCartRepository);
+    }
+
     @Test
     void should_create_shopping_cart() {
         Product product1 = ProductDataProvider.getSimpleProduct();
@@ -110,6 +191,18 @@ class ShoppingServiceTest {
         assertThat(exception.getReason()).isEqualTo("No available products found");
     }
 
+    @Test
+    void should_reject_unknown_products_without_fetching_catalog() {
+        knownProductIds.onCatalogRefresh(List.of(ProductDataProvider.getSimpleProduct()));
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () ->
+                shoppingService.createShoppingCart(new ShoppingCartRequestBody(List.of(UUID.randomUUID(), UUID.randomUUID())))
+        );
+        assertThat(exception.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+        assertThat(exception.getReason()).isEqualTo("No available products found");
+        verify(productClient, never()).getAllProducts();
+    }
+
     @Test
     void should_successfully_edit_shopping_cart() {
         UUID cartId = UUID.randomUUID();
@@ -123,7 +216,7 @@ class ShoppingServiceTest {
         when(shoppingCartRepository.findShoppingCartById(cartId)).thenReturn(Optional.of(existingCart));
         when(shoppingCartRepository.save(any())).thenReturn(updatedCart);
 
-        ShoppingCart result = shoppingService.editShoppingCart(cartId, new ShoppingCartRequestBody(List.of(product1.getId(), product2.getId())));
+        ShoppingCart result = shoppingService.editShoppingCart(cartId, new ShoppingCartRequestBody(List.of(product1.getId(), product2.getId())), null);
         assertThat(result.getId()).isEqualTo(cartId);
         assertThat(result.getProducts()).containsExactlyInAnyOrderElementsOf(productList);
     }
@@ -137,7 +230,7 @@ class ShoppingServiceTest {
         when(shoppingCartRepository.findShoppingCartById(cartId)).thenReturn(Optional.of(existingCart));
 
         ResponseStatusException exception = assertThrows(ResponseStatusException.class, () ->
-                shoppingService.editShoppingCart(cartId, new ShoppingCartRequestBody(List.of(UUID.randomUUID())))
+                shoppingService.editShoppingCart(cartId, new ShoppingCartRequestBody(List.of(UUID.randomUUID())), null)
         );
         assertThat(exception.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
         assertThat(exception.getReason()).isEqualTo("No products found");
@@ -154,10 +247,87 @@ class ShoppingServiceTest {
         when(shoppingCartRepository.findShoppingCartById(cartId)).thenReturn(Optional.empty());
 
         ResponseStatusException exception = assertThrows(ResponseStatusException.class, () ->
-                shoppingService.editShoppingCart(cartId, new ShoppingCartRequestBody(List.of(UUID.randomUUID())))
+                shoppingService.editShoppingCart(cartId, new ShoppingCartRequestBody(List.of(UUID.randomUUID())), null)
         );
         assertThat(exception.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
-        assertThat(exception.getReason()).isEqualTo("No products found");
+        assertThat(exception.getReason()).isEqualTo("Shopping cart not found");
+    }
+
+    @Test
+    void should_return_precondition_failed_when_version_does_not_match() {
+        UUID cartId = UUID.randomUUID();
+        Product product = ProductDataProvider.getSimpleProduct();
+        ShoppingCart existingCart = new ShoppingCart(cartId, Collections.emptyList(), LocalDateTime.now(), 2L);
+
+        when(productClient.getAllProducts()).thenReturn(List.of(product));
+        when(shoppingCartRepository.findShoppingCartById(cartId)).thenReturn(Optional.of(existingCart));
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () ->
+                shoppingService.editShoppingCart(cartId, new ShoppingCartRequestBody(List.of(product.getId())), 1L)
+        );
+        assertThat(exception.getStatusCode()).isEqualTo(HttpStatus.PRECONDITION_FAILED);
+        verify(productClient, never()).getAllProducts();
+        verify(shoppingCartRepository, never()).save(any());
+    }
+
+    @Test
+    void should_return_precondition_failed_when_cart_modified_after_if_match_check() {
+        UUID cartId = UUID.randomUUID();
+        Product product = ProductDataProvider.getSimpleProduct();
+        ShoppingCart existingCart = new ShoppingCart(cartId, Collections.emptyList(), LocalDateTime.now(), 2L);
+
+        when(productClient.getAllProducts()).thenReturn(List.of(product));
+        when(shoppingCartRepository.findShoppingCartById(cartId)).thenReturn(Optional.of(existingCart));
+        when(shoppingCartRepository.save(any())).thenThrow(new OptimisticLockingFailureException("version changed"));
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () ->
+                shoppingService.editShoppingCart(cartId, new ShoppingCartRequestBody(List.of(product.getId())), 2L)
+        );
+        assertThat(exception.getStatusCode()).isEqualTo(HttpStatus.PRECONDITION_FAILED);
+    }
+
+    @Test
+    void should_return_conflict_when_cart_modified_concurrently() {
+        UUID cartId = UUID.randomUUID();
+        Product product = ProductDataProvider.getSimpleProduct();
+        ShoppingCart existingCart = new ShoppingCart(cartId, Collections.emptyList(), LocalDateTime.now(), 2L);
+
+        when(productClient.getAllProducts()).thenReturn(List.of(product));
+        when(shoppingCartRepository.findShoppingCartById(cartId)).thenReturn(Optional.of(existingCart));
+        when(shoppingCartRepository.save(any())).thenThrow(new OptimisticLockingFailureException("version changed"));
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () ->
+                shoppingService.editShoppingCart(cartId, new ShoppingCartRequestBody(List.of(product.getId())), null)
+        );
+        assertThat(exception.getStatusCode()).isEqualTo(HttpStatus.CONFLICT);
+    }
+
+    @Test
+    void should_not_resolve_products_when_add_does_not_match_version() {
+        UUID cartId = UUID.randomUUID();
+        ShoppingCart existingCart = new ShoppingCart(cartId, Collections.emptyList(), LocalDateTime.now(), 2L);
+        when(shoppingCartRepository.findShoppingCartById(cartId)).thenReturn(Optional.of(existingCart));
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () ->
+                shoppingService.addProductsToShoppingCart(cartId, List.of(UUID.randomUUID()), 1L)
+        );
+        assertThat(exception.getStatusCode()).isEqualTo(HttpStatus.PRECONDITION_FAILED);
+        verify(productClient, never()).getAllProducts();
+        verify(shoppingCartRepository, never()).save(any());
+    }
+
+    @Test
+    void should_return_precondition_failed_when_remove_does_not_match_version() {
+        UUID cartId = UUID.randomUUID();
+        Product product = ProductDataProvider.getSimpleProduct();
+        ShoppingCart existingCart = new ShoppingCart(cartId, List.of(product), LocalDateTime.now(), 2L);
+        when(shoppingCartRepository.findShoppingCartById(cartId)).thenReturn(Optional.of(existingCart));
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () ->
+                shoppingService.removeProductsFromShoppingCart(cartId, List.of(product.getId()), 1L)
+        );
+        assertThat(exception.getStatusCode()).isEqualTo(HttpStatus.PRECONDITION_FAILED);
+        verify(shoppingCartRepository, never()).save(any());
     }
 
     @Test
@@ -173,11 +343,62 @@ class ShoppingServiceTest {
         when(shoppingCartRepository.findShoppingCartById(cartId)).thenReturn(Optional.of(existingCart));
         when(shoppingCartRepository.save(any())).thenReturn(updatedCart);
 
-        ShoppingCart result = shoppingService.addProductsToShoppingCart(cartId, List.of(product1.getId(), product2.getId()));
+        ShoppingCart result = shoppingService.addProductsToShoppingCart(cartId, List.of(product1.getId(), product2.getId()), null);
         assertThat(result.getId()).isEqualTo(cartId);
         assertThat(result.getProducts()).containsExactlyInAnyOrderElementsOf(productList);
     }
 
+    @Test
+    void should_count_added_and_removed_products_as_popular() {
+        UUID cartId = UUID.randomUUID();
+        Product product1 = ProductDataProvider.getSimpleProduct();
+        Product product2 = ProductDataProvider.getSimpleProduct();
+        ShoppingCart existingCart = new ShoppingCart(cartId, new ArrayList<>(List.of(product1)), LocalDateTime.now());
+
+        when(productClient.getAllProducts()).thenReturn(List.of(product1, product2));
+        when(shoppingCartRepository.findShoppingCartById(cartId)).thenReturn(Optional.of(existingCart));
+        when(shoppingCartRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        shoppingService.createShoppingCart(new ShoppingCartRequestBody(List.of(product1.getId(), product2.getId())));
+        shoppingService.addProductsToShoppingCart(cartId, List.of(product1.getId(), product2.getId()), null);
+        shoppingService.removeProductsFromShoppingCart(cartId, List.of(product1.getId(), UUID.randomUUID()), null);
+
+        assertThat(popularProducts.topProducts()).containsExactly(new PopularProduct(product2.getId(), 2));
+    }
+
+    @Test
+    void should_count_only_changed_products_of_edited_cart_as_popular() {
+        UUID cartId = UUID.randomUUID();
+        Product kept = ProductDataProvider.getSimpleProduct();
+        Product removed = ProductDataProvider.getSimpleProduct();
+        Product added = ProductDataProvider.getSimpleProduct();
+        ShoppingCart existingCart = new ShoppingCart(cartId, new ArrayList<>(List.of(kept, removed)), LocalDateTime.now());
+        popularProducts.recordAdded(List.of(kept.getId(), removed.getId()));
+
+        when(productClient.getAllProducts()).thenReturn(List.of(kept, removed, added));
+        when(shoppingCartRepository.findShoppingCartById(cartId)).thenReturn(Optional.of(existingCart));
+        when(shoppingCartRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        shoppingService.editShoppingCart(cartId, new ShoppingCartRequestBody(List.of(kept.getId(), added.getId())), null);
+
+        assertThat(popularProducts.topProducts()).containsExactlyInAnyOrder(
+                new PopularProduct(kept.getId(), 1), new PopularProduct(added.getId(), 1));
+    }
+
+    @Test
+    void should_count_products_of_deleted_cart_as_removed() {
+        UUID cartId = UUID.randomUUID();
+        Product deleted = ProductDataProvider.getSimpleProduct();
+        Product kept = ProductDataProvider.getSimpleProduct();
+        ShoppingCart existingCart = new ShoppingCart(cartId, List.of(deleted), LocalDateTime.now());
+        popularProducts.recordAdded(List.of(deleted.getId(), kept.getId()));
+        when(shoppingCartRepository.findShoppingCartById(cartId)).thenReturn(Optional.of(existingCart));
+
+        shoppingService.deleteShoppingCart(cartId, null);
+
+        assertThat(popularProducts.topProducts()).containsExactly(new PopularProduct(kept.getId(), 1));
+    }
+
     @Test
     void should_return_add_not_found_when_no_matching_products_found() {
         UUID cartId = UUID.randomUUID();
@@ -188,7 +409,7 @@ class ShoppingServiceTest {
         when(shoppingCartRepository.findShoppingCartById(cartId)).thenReturn(Optional.of(existingCart));
 
         ResponseStatusException exception = assertThrows(ResponseStatusException.class, () ->
-                shoppingService.addProductsToShoppingCart(cartId, Arrays.asList(UUID.randomUUID(), UUID.randomUUID()))
+                shoppingService.addProductsToShoppingCart(cartId, Arrays.asList(UUID.randomUUID(), UUID.randomUUID()), null)
         );
         assertThat(exception.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
         assertThat(exception.getReason()).isEqualTo("No products found");
@@ -204,7 +425,7 @@ class ShoppingServiceTest {
         when(shoppingCartRepository.findShoppingCartById(cartId)).thenReturn(Optional.empty());
 
         ResponseStatusException exception = assertThrows(ResponseStatusException.class, () ->
-                shoppingService.addProductsToShoppingCart(cartId, productIds)
+                shoppingService.addProductsToShoppingCart(cartId, productIds, null)
         );
         assertThat(exception.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
         assertThat(exception.getReason()).isEqualTo("Shopping cart not found");
@@ -223,7 +444,7 @@ class ShoppingServiceTest {
         when(shoppingCartRepository.findShoppingCartById(cartId)).thenReturn(Optional.of(existingCart));
         when(shoppingCartRepository.save(any())).thenReturn(updatedCart);
 
-        ShoppingCart result = shoppingService.removeProductsFromShoppingCart(cartId, productsToRemove);
+        ShoppingCart result = shoppingService.removeProductsFromShoppingCart(cartId, productsToRemove, null);
         assertThat(result.getId()).isEqualTo(cartId);
         assertThat(result.getProducts()).isEmpty();
     }
@@ -237,7 +458,7 @@ class ShoppingServiceTest {
         when(shoppingCartRepository.findShoppingCartById(cartId)).thenReturn(Optional.of(existingCart));
         when(shoppingCartRepository.save(any())).thenReturn(existingCart);
 
-        ShoppingCart result = shoppingService.removeProductsFromShoppingCart(cartId, productsToRemove);
+        ShoppingCart result = shoppingService.removeProductsFromShoppingCart(cartId, productsToRemove, null);
         assertThat(result).isEqualTo(existingCart);
     }
 
@@ -249,19 +470,86 @@ class ShoppingServiceTest {
         when(shoppingCartRepository.findShoppingCartById(cartId)).thenReturn(Optional.empty());
 
         ResponseStatusException exception = assertThrows(ResponseStatusException.class, () ->
-                shoppingService.removeProductsFromShoppingCart(cartId, productsToRemove)
+                shoppingService.removeProductsFromShoppingCart(cartId, productsToRemove, null)
         );
         assertThat(exception.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
         assertThat(exception.getReason()).isEqualTo("Shopping cart not found");
     }
 
+    @Test
+    void should_merge_carts_without_fetching_catalog() {
+        UUID targetId = UUID.randomUUID();
+        UUID sourceId = UUID.randomUUID();
+        ShoppingCart mergedCart = new ShoppingCart(targetId, List.of(ProductDataProvider.getSimpleProduct()), LocalDateTime.now(), 3L);
+
+        when(shoppingCartRepository.mergeShoppingCarts(targetId, sourceId, null)).thenReturn(Optional.of(mergedCart));
+
+        ShoppingCart result = shoppingService.mergeShoppingCarts(targetId, sourceId, null);
+        assertThat(result).isEqualTo(mergedCart);
+
+        verify(shoppingCartRepository, never()).save(any());
+        verifyNoInteractions(productClient);
+    }
+
+    @Test
+    void should_return_not_found_for_merge_when_cart_does_not_exist() {
+        UUID targetId = UUID.randomUUID();
+        UUID sourceId = UUID.randomUUID();
+
+        when(shoppingCartRepository.mergeShoppingCarts(targetId, sourceId, null)).thenReturn(Optional.empty());
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () ->
+                shoppingService.mergeShoppingCarts(targetId, sourceId, null)
+        );
+        assertThat(exception.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+        assertThat(exception.getReason()).isEqualTo("Shopping cart not found");
+    }
+
+    @Test
+    void should_return_conflict_when_merge_source_keeps_changing() {
+        UUID targetId = UUID.randomUUID();
+        UUID sourceId = UUID.randomUUID();
+
+        when(shoppingCartRepository.mergeShoppingCarts(targetId, sourceId, null)).thenThrow(new OptimisticLockingFailureException("changed"));
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () ->
+                shoppingService.mergeShoppingCarts(targetId, sourceId, null)
+        );
+        assertThat(exception.getStatusCode()).isEqualTo(HttpStatus.CONFLICT);
+    }
+
+    @Test
+    void should_return_precondition_failed_when_merge_target_does_not_match_version() {
+        UUID targetId = UUID.randomUUID();
+        UUID sourceId = UUID.randomUUID();
+
+        when(shoppingCartRepository.mergeShoppingCarts(targetId, sourceId, 3L)).thenThrow(new OptimisticLockingFailureException("changed"));
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () ->
+                shoppingService.mergeShoppingCarts(targetId, sourceId, 3L)
+        );
+        assertThat(exception.getStatusCode()).isEqualTo(HttpStatus.PRECONDITION_FAILED);
+    }
+
+    @Test
+    void should_return_bad_request_when_merging_cart_into_itself() {
+        UUID cartId = UUID.randomUUID();
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () ->
+                shoppingService.mergeShoppingCarts(cartId, cartId, null)
+        );
+        assertThat(exception.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+
+        verify(shoppingCartRepository, never()).mergeShoppingCarts(any(), any(), any());
+    }
+
     @Test
     void should_return_not_found_for_delete_if_cart_does_not_exist() {
         UUID cartId = UUID.randomUUID();
         when(shoppingCartRepository.findShoppingCartById(cartId)).thenReturn(Optional.empty());
 
         ResponseStatusException exception = assertThrows(ResponseStatusException.class, () ->
-                shoppingService.deleteShoppingCart(cartId)
+                shoppingService.deleteShoppingCart(cartId, null)
         );
         assertThat(exception.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
         assertThat(exception.getReason()).isEqualTo("Shopping cart not found");
@@ -270,4 +558,70 @@ class ShoppingServiceTest {
         verify(shoppingCartRepository, never()).deleteShoppingCartById(cartId);
     }
 
-}
\ No newline at end of file
+    @Test
+    void should_not_delete_cart_that_does_not_match_version() {
+        UUID cartId = UUID.randomUUID();
+        ShoppingCart existingCart = new ShoppingCart(cartId, Collections.emptyList(), LocalDateTime.now(), 2L);
+        when(shoppingCartRepository.findShoppingCartById(cartId)).thenReturn(Optional.of(existingCart));
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () ->
+                shoppingService.deleteShoppingCart(cartId, 1L)
+        );
+        assertThat(exception.getStatusCode()).isEqualTo(HttpStatus.PRECONDITION_FAILED);
+        verify(shoppingCartRepository, never()).delete(any());
+    }
+
+    @Test
+    void should_return_precondition_failed_when_cart_modified_before_delete() {
+        UUID cartId = UUID.randomUUID();
+        ShoppingCart existingCart = new ShoppingCart(cartId, Collections.emptyList(), LocalDateTime.now(), 2L);
+        when(shoppingCartRepository.findShoppingCartById(cartId)).thenReturn(Optional.of(existingCart));
+        doThrow(new OptimisticLockingFailureException("version changed")).when(shoppingCartRepository).delete(existingCart);
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () ->
+                shoppingService.deleteShoppingCart(cartId, 2L)
+        );
+        assertThat(exception.getStatusCode()).isEqualTo(HttpStatus.PRECONDITION_FAILED);
+    }
+
+
+    @Test
+    void should_tag_expired_carts_only_when_cart_events_are_enabled() {
+        shoppingService.deleteOldCarts();
+        verify(shoppingCartRepository).expireShoppingCarts(any(), eq(false));
+
+        cartEventsConfig.setEnabled(true);
+        shoppingService.deleteOldCarts();
+        verify(shoppingCartRepository).expireShoppingCarts(any(), eq(true));
+    }
+
+    @Test
+    void should_record_repository_and_cleanup_jfr_events() throws Exception {
+        UUID cartId = UUID.randomUUID();
+        when(shoppingCartRepository.findShoppingCartById(any())).thenReturn(Optional.of(SHOPPING_CART));
+        when(shoppingCartRepository.expireShoppingCarts(any(), anyBoolean())).thenReturn(3L);
+        Path file = Files.createTempFile("shopping-service-", ".jfr");
+
+        try (Recording recording = new Recording()) {
+            recording.enable("com.example.webshoppingservice.CartRepository");
+            recording.enable("com.example.webshoppingservice.CartCleanup");
+            recording.start();
+            shoppingService.retrieveShoppingCart(cartId);
+            shoppingService.deleteOldCarts();
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        Files.delete(file);
+        assertThat(events).anySatisfy(event -> {
+            assertThat(event.getEventType().getName()).endsWith("CartRepository");
+            assertThat(event.getString("cartId")).isEqualTo(cartId.toString());
+            assertThat(event.getString("operation")).isEqualTo("read");
+        });
+        assertThat(events).anySatisfy(event -> {
+            assertThat(event.getEventType().getName()).endsWith("CartCleanup");
+            assertThat(event.getLong("deletedCarts")).isEqualTo(3L);
+        });
+    }
+}